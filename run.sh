@@ -16,6 +16,6 @@ echo "     RUNNING     "
 echo "#################"
 
 
-time nice -n 19 java -cp target/pv021-1.0-SNAPSHOT.jar pv021.main.Main
+time nice -n 19 java --add-modules jdk.incubator.vector -cp target/pv021-1.0-SNAPSHOT.jar pv021.main.Main
 
 python3 evaluator/evaluate.py test_predictions.csv data/fashion_mnist_test_labels.csv
\ No newline at end of file
@@ -0,0 +1,73 @@
+package pv021.benchmark;
+
+import pv021.data.Data;
+import pv021.data.Dataset;
+import pv021.function.activation.ReLuFunction;
+import pv021.function.activation.SoftMaxFunction;
+import pv021.network.NeuralNetwork;
+import pv021.network.builder.NeuralNetworkBuilder;
+
+/**
+ * Trains the network of {@link pv021.main.Main} synchronously, asynchronously and asynchronously with a bounded
+ * staleness for every given number of threads, and reports the throughput and the final test accuracy.
+ * <p>
+ * Run with {@code java -cp target/benchmarks.jar pv021.benchmark.AsynchronousBenchmark [data path] [steps]
+ * [thread counts] [staleness]}, the defaults being data/fashion_mnist, 1440 steps, 4,8,16 threads and a staleness
+ * of 2.
+ */
+public class AsynchronousBenchmark {
+    private static final int WARM_UP_STEPS = 20;
+    private static final int BATCH_SIZE = 2048;
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "data/fashion_mnist";
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 1440;
+        String[] threadCounts = (args.length > 2 ? args[2] : "4,8,16").split(",");
+        int staleness = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        Data data = new Data(path, 10, true);
+        for (String mode : new String[]{"synchronous", "asynchronous"}) {  // warm-up
+            try (NeuralNetwork neuralNetwork = build(data, mode, WARM_UP_STEPS, Integer.parseInt(threadCounts[0]),
+                    staleness)) {
+                neuralNetwork.train();
+            }
+        }
+
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount);
+            for (String mode : new String[]{"synchronous", "asynchronous", "bounded"}) {
+                double seconds;
+                int[] predictions;
+                try (NeuralNetwork neuralNetwork = build(data, mode, steps, threads, staleness)) {
+                    long start = System.nanoTime();
+                    neuralNetwork.train();
+                    seconds = (System.nanoTime() - start) / 1e9;
+                    predictions = neuralNetwork.predict(data.getTest());
+                }
+
+                Dataset test = data.getTest();
+                int correct = 0;
+                for (int k = 0; k < predictions.length; k++) {
+                    if (predictions[k] == test.getLabel(k)) {
+                        correct++;
+                    }
+                }
+
+                System.out.printf("%2d threads %-12s %8.2f s %10.0f samples/s  test accuracy %.4f%n", threads, mode,
+                        seconds, (double) steps * BATCH_SIZE / seconds, correct / (double) predictions.length);
+            }
+        }
+    }
+
+    private static NeuralNetwork build(Data data, String mode, int steps, int threads, int staleness) {
+        NeuralNetworkBuilder builder = new NeuralNetworkBuilder(data, 0.00184, steps, BATCH_SIZE, 0.35, 0.9, 1,
+                threads)
+                .setBatched(true)
+                .setAsynchronous(!mode.equals("synchronous"))
+                .addLayer(128, new ReLuFunction());
+        if (mode.equals("bounded")) {
+            builder.setMaxStaleness(staleness);
+        }
+        return builder.build(new SoftMaxFunction());
+    }
+}
@@ -0,0 +1,139 @@
+package pv021.benchmark;
+
+import pv021.data.Data;
+import pv021.data.Dataset;
+import pv021.distributed.ProcessGroup;
+import pv021.function.activation.ReLuFunction;
+import pv021.function.activation.SoftMaxFunction;
+import pv021.network.NeuralNetwork;
+import pv021.network.builder.NeuralNetworkBuilder;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trains the network of {@link pv021.main.Main} by the given numbers of processes on this host, each with the given
+ * number of threads, and reports the throughput, the scaling efficiency against a single process and the final
+ * test accuracy. The processes are started as JVMs running this class with the --worker option, on the class path
+ * of this JVM, so the jar holding this class also holds the network.
+ * <p>
+ * Run with {@code java --add-modules jdk.incubator.vector -cp target/benchmarks.jar
+ * pv021.benchmark.DistributedBenchmark [data path] [steps] [process counts] [threads] [tcp|unix]}, the defaults
+ * being data/fashion_mnist, 1440 steps, 1,2,4 processes, 1 thread per process and TCP. The first steps are not
+ * measured, as they include the start of the other processes and the warm-up of the JIT compiler.
+ */
+public class DistributedBenchmark {
+    private static final int WARM_UP_STEPS = 20;
+    private static final int BATCH_SIZE = 2048;
+    private static final int BASE_PORT = 5021;
+    private static final String RESULT = "result";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--worker")) {
+            runWorker(args);
+            return;
+        }
+        String path = args.length > 0 ? args[0] : "data/fashion_mnist";
+        String steps = args.length > 1 ? args[1] : "1440";
+        String[] processCounts = (args.length > 2 ? args[2] : "1,2,4").split(",");
+        String threads = args.length > 3 ? args[3] : "1";
+        String transport = args.length > 4 ? args[4] : "tcp";
+
+        String java = ProcessHandle.current().info().command().orElse("java");
+        double singleThroughput = 0;
+        for (String processCount : processCounts) {
+            int size = Integer.parseInt(processCount);
+            Path socketDirectory = transport.equals("unix") ? Files.createTempDirectory("pv021") : null;
+
+            List<Process> processes = new ArrayList<>();
+            for (int rank = 0; rank < size; rank++) {
+                ProcessBuilder processBuilder = new ProcessBuilder(java, "--add-modules", "jdk.incubator.vector",
+                        "-cp", System.getProperty("java.class.path"), DistributedBenchmark.class.getName(),
+                        "--worker", path, steps, threads, String.valueOf(rank), processCount,
+                        socketDirectory != null ? socketDirectory.toString() : String.valueOf(BASE_PORT));
+                processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+                if (rank > 0) {
+                    processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+                }
+                processes.add(processBuilder.start());
+            }
+
+            // the first process reports the seconds of the measured steps and the test accuracy
+            String[] result = null;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(processes.get(0).getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(RESULT)) {
+                        result = line.split(" ");
+                    }
+                }
+            }
+            for (Process process : processes) {
+                if (process.waitFor() != 0) {
+                    throw new IllegalStateException("Process of " + size + " failed!");
+                }
+            }
+            if (socketDirectory != null) {
+                Files.deleteIfExists(socketDirectory);
+            }
+            if (result == null) {
+                throw new IllegalStateException("Process of " + size + " reported no result!");
+            }
+
+            double seconds = Double.parseDouble(result[1]);
+            double throughput = (Integer.parseInt(steps) - WARM_UP_STEPS) * (double) BATCH_SIZE / seconds;
+            if (size == 1) {
+                singleThroughput = throughput;
+            }
+            System.out.printf("%2d processes %8.2f s %10.0f samples/s  efficiency %s  test accuracy %s%n", size,
+                    seconds, throughput,
+                    singleThroughput > 0 ? String.format("%.2f", throughput / (size * singleThroughput)) : "-",
+                    result[2]);
+        }
+    }
+
+    private static void runWorker(String[] args) throws Exception {
+        String path = args[1];
+        int steps = Integer.parseInt(args[2]);
+        int threads = Integer.parseInt(args[3]);
+        int rank = Integer.parseInt(args[4]);
+        int size = Integer.parseInt(args[5]);
+        ProcessGroup processGroup = args[6].chars().allMatch(Character::isDigit)
+                ? ProcessGroup.tcp(rank, size, "localhost", Integer.parseInt(args[6]))
+                : ProcessGroup.unixDomain(rank, size, Path.of(args[6]));
+
+        Data data = new Data(path, 10, true);
+        long[] measuredNanos = new long[1];
+        NeuralNetworkBuilder builder = new NeuralNetworkBuilder(data, 0.00184, steps, BATCH_SIZE, 0.35, 0.9, 1,
+                threads)
+                .setBatched(true)
+                .setListener(metrics -> {
+                    if (metrics.getStep() > WARM_UP_STEPS) {
+                        measuredNanos[0] += metrics.getStepNanos();
+                    }
+                })
+                .addLayer(128, new ReLuFunction());
+        if (size > 1) {
+            builder.setProcessGroup(processGroup);
+        }
+        NeuralNetwork neuralNetwork = builder.build(new SoftMaxFunction());
+        neuralNetwork.train();
+
+        if (rank == 0) {
+            Dataset test = data.getTest();
+            int[] predictions = neuralNetwork.predict(test);
+            int correct = 0;
+            for (int k = 0; k < predictions.length; k++) {
+                if (predictions[k] == test.getLabel(k)) {
+                    correct++;
+                }
+            }
+            System.out.printf("%s %.3f %.4f%n", RESULT, measuredNanos[0] / 1e9,
+                    correct / (double) predictions.length);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package pv021.benchmark;
+
+import pv021.data.Data;
+import pv021.search.SearchRunner;
+import pv021.search.Trial;
+
+import java.util.List;
+
+/**
+ * Runs the search of {@link SearchRunner} one trial at a time and then concurrently with the given thread budget,
+ * reports the wall-clock time of both and writes the leaderboard like the runner. The leaderboards of both
+ * runs are the same, since every trial is trained by one thread from the seed of the search.
+ * <p>
+ * Run with {@code java -cp target/benchmarks.jar pv021.benchmark.HyperparameterSearchBenchmark [data path]
+ * [trials] [min steps] [max steps] [threads]}, with the defaults of {@link SearchRunner}.
+ */
+public class HyperparameterSearchBenchmark {
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : SearchRunner.DATA;
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 27;
+        int minSteps = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+        int maxSteps = args.length > 3 ? Integer.parseInt(args[3]) : 1080;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        Data data = SearchRunner.loadData(path);
+
+        long start = System.nanoTime();
+        SearchRunner.search(data, trials, minSteps, maxSteps, 1);
+        double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        List<Trial> leaderboard = SearchRunner.search(data, trials, minSteps, maxSteps, threads);
+        double concurrentSeconds = (System.nanoTime() - start) / 1e9;
+
+        SearchRunner.report(leaderboard);
+        System.out.printf("One trial at a time %.2f s, %d at a time %.2f s, speedup %.2f%n", sequentialSeconds,
+                threads, concurrentSeconds, sequentialSeconds / concurrentSeconds);
+    }
+}
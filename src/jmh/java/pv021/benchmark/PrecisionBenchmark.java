@@ -0,0 +1,64 @@
+package pv021.benchmark;
+
+import pv021.data.Data;
+import pv021.data.Dataset;
+import pv021.function.activation.ReLuFunction;
+import pv021.function.activation.SoftMaxFunction;
+import pv021.network.NeuralNetwork;
+import pv021.network.Precision;
+import pv021.network.builder.NeuralNetworkBuilder;
+
+/**
+ * Trains the network of {@link pv021.main.Main} in the batched mode once in every {@link Precision} and reports
+ * the training time and the final test accuracy.
+ * <p>
+ * A whole training with its accuracy does not fit the iterations of JMH, so this is a plain main. Run with
+ * {@code java -cp target/benchmarks.jar pv021.benchmark.PrecisionBenchmark [data path] [steps] [threads]}, the
+ * defaults being data/fashion_mnist, 1440 steps and all the available processors.
+ */
+public class PrecisionBenchmark {
+    private static final int WARM_UP_STEPS = 20;
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "data/fashion_mnist";
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 1440;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Data data = new Data(path, 10, true);
+        for (Precision precision : Precision.values()) {  // warm-up, so that all the modes run compiled code
+            try (NeuralNetwork neuralNetwork = build(data, precision, WARM_UP_STEPS, threads)) {
+                neuralNetwork.train();
+            }
+        }
+
+        for (Precision precision : Precision.values()) {
+            double seconds;
+            int[] predictions;
+            try (NeuralNetwork neuralNetwork = build(data, precision, steps, threads)) {
+                long start = System.nanoTime();
+                neuralNetwork.train();
+                seconds = (System.nanoTime() - start) / 1e9;
+                predictions = neuralNetwork.predict(data.getTest());
+            }
+
+            Dataset test = data.getTest();
+            int correct = 0;
+            for (int k = 0; k < predictions.length; k++) {
+                if (predictions[k] == test.getLabel(k)) {
+                    correct++;
+                }
+            }
+
+            System.out.printf("%-7s %8.2f s %8.1f steps/s  test accuracy %.4f%n", precision, seconds,
+                    steps / seconds, correct / (double) predictions.length);
+        }
+    }
+
+    private static NeuralNetwork build(Data data, Precision precision, int steps, int threads) {
+        return new NeuralNetworkBuilder(data, 0.00184, steps, 2048, 0.35, 0.9, 1, threads)
+                .setBatched(true)
+                .setPrecision(precision)
+                .addLayer(128, new ReLuFunction())
+                .build(new SoftMaxFunction());
+    }
+}
@@ -0,0 +1,198 @@
+package pv021.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-sample hot loops of a 784-128 layer in three weight layouts:
+ * <ul>
+ *     <li>jagged - the former double[next][size + 1] arrays,</li>
+ *     <li>flat - one row-major buffer indexed as row + j,</li>
+ *     <li>layer - the layout of {@link pv021.network.Layer}: the flat buffer plus transposed and bias-free
+ *     row copies, so every inner loop indexes all its arrays by the loop variable alone.</li>
+ * </ul>
+ * The accumulator rows of the layer layout have the same shape as the jagged ones, so its gradient runs the jagged
+ * loop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class WeightLayoutBenchmark {
+    private static final int SIZE = 784;
+    private static final int NEXT = 128;
+
+    @Param({"jagged", "flat", "layer"})
+    public String layout;
+
+    private final double[][] jaggedWeights = new double[NEXT][SIZE + 1];
+    private final double[][] jaggedAccumulator = new double[NEXT][SIZE + 1];
+    private final double[] weights = new double[NEXT * (SIZE + 1)];
+    private final double[] flatAccumulator = new double[NEXT * (SIZE + 1)];
+    private final double[][] transposedWeights = new double[SIZE + 1][NEXT];
+    private final double[][] weightsWithoutBias = new double[NEXT][SIZE];
+
+    private final double[] outputs = new double[SIZE + 1];
+    private final double[] potentials = new double[NEXT];
+    private final double[] nextTerms = new double[NEXT];
+    private final double[] terms = new double[SIZE];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        for (int r = 0; r < NEXT; r++) {
+            for (int j = 0; j < SIZE + 1; j++) {
+                double weight = random.nextGaussian();
+                jaggedWeights[r][j] = weight;
+                weights[r * (SIZE + 1) + j] = weight;
+                transposedWeights[j][r] = weight;
+                if (j > 0) {
+                    weightsWithoutBias[r][j - 1] = weight;
+                }
+            }
+        }
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = random.nextGaussian();
+        }
+        for (int r = 0; r < NEXT; r++) {
+            nextTerms[r] = random.nextGaussian();
+        }
+    }
+
+    @Benchmark
+    public double forward() {
+        switch (layout) {
+            case "jagged":
+                return forwardJagged();
+            case "flat":
+                return forwardFlat();
+            default:
+                return forwardLayer();
+        }
+    }
+
+    @Benchmark
+    public double backpropagate() {
+        switch (layout) {
+            case "jagged":
+                return backpropagateJagged();
+            case "flat":
+                return backpropagateFlat();
+            default:
+                return backpropagateLayer();
+        }
+    }
+
+    @Benchmark
+    public double gradient() {
+        return layout.equals("flat") ? gradientFlat() : gradientJagged();
+    }
+
+    private double forwardJagged() {
+        for (int j = 0; j < NEXT; j++) {
+            double potential = 0;
+            for (int i = 0; i < SIZE + 1; i++) {
+                potential += jaggedWeights[j][i] * outputs[i];
+            }
+            potentials[j] = potential;
+        }
+        return potentials[0];
+    }
+
+    private double forwardFlat() {
+        for (int j = 0; j < NEXT; j++) {
+            double potential = 0;
+            int row = j * (SIZE + 1);
+            for (int i = 0; i < SIZE + 1; i++) {
+                potential += weights[row + i] * outputs[i];
+            }
+            potentials[j] = potential;
+        }
+        return potentials[0];
+    }
+
+    private double forwardLayer() {
+        Arrays.fill(potentials, 0);
+        for (int i = 0; i < SIZE + 1; i++) {
+            double output = outputs[i];
+            double[] row = transposedWeights[i];
+            for (int j = 0; j < NEXT; j++) {
+                potentials[j] += output * row[j];
+            }
+        }
+        return potentials[0];
+    }
+
+    private double backpropagateJagged() {
+        Arrays.fill(terms, 0);
+        for (int r = 0; r < NEXT; r++) {
+            double t12 = nextTerms[r];
+            for (int j = 0; j < SIZE; j++) {
+                terms[j] += t12 * jaggedWeights[r][j + 1];
+            }
+        }
+        return terms[0];
+    }
+
+    private double backpropagateFlat() {
+        Arrays.fill(terms, 0);
+        for (int r = 0; r < NEXT; r++) {
+            double t12 = nextTerms[r];
+            int row = r * (SIZE + 1) + 1;
+            for (int j = 0; j < SIZE; j++) {
+                terms[j] += t12 * weights[row + j];
+            }
+        }
+        return terms[0];
+    }
+
+    private double backpropagateLayer() {
+        Arrays.fill(terms, 0);
+        for (int r = 0; r < NEXT; r++) {
+            double t12 = nextTerms[r];
+            double[] row = weightsWithoutBias[r];
+            for (int j = 0; j < SIZE; j++) {
+                terms[j] += t12 * row[j];
+            }
+        }
+        return terms[0];
+    }
+
+    private double gradientJagged() {
+        for (int j = 0; j < NEXT; j++) {
+            double t12 = nextTerms[j];
+            double[] row = jaggedAccumulator[j];
+            for (int i = 0; i < SIZE + 1; i++) {
+                row[i] += t12 * outputs[i];
+            }
+        }
+        return jaggedAccumulator[0][0];
+    }
+
+    private double gradientFlat() {
+        for (int j = 0; j < NEXT; j++) {
+            double t12 = nextTerms[j];
+            int row = j * (SIZE + 1);
+            for (int i = 0; i < SIZE + 1; i++) {
+                flatAccumulator[row + i] += t12 * outputs[i];
+            }
+        }
+        return flatAccumulator[0];
+    }
+}
@@ -0,0 +1,89 @@
+package pv021.network;
+
+import pv021.data.Data;
+import pv021.function.activation.ReLuFunction;
+import pv021.function.activation.SoftMaxFunction;
+import pv021.network.builder.NeuralNetworkBuilder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * The datasets and networks of the benchmarks.
+ * <p>
+ * The dataset "xor" is the fixture in data/, so the benchmarks must run from the project root. The dataset
+ * "synthetic" has the shape of Fashion MNIST (784 pixels 0-255, 10 classes) with random values, and is written
+ * into a temporary directory.
+ */
+final class BenchmarkData {
+    static final int SYNTHETIC_TRAIN_SIZE = 8192;
+    static final int SYNTHETIC_TEST_SIZE = 2048;
+    static final int SYNTHETIC_DIMENSION = 784;
+    static final int SYNTHETIC_CLASSES = 10;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return the path prefix of the dataset files, to be passed to {@link Data}
+     */
+    static String prepare(String dataset, Path directory) throws IOException {
+        switch (dataset) {
+            case "xor":
+                return "data/xor";
+            case "synthetic":
+                String prefix = directory.resolve("synthetic").toString();
+                Random random = new Random(1);
+                writeSplit(prefix + "_train", SYNTHETIC_TRAIN_SIZE, random);
+                writeSplit(prefix + "_test", SYNTHETIC_TEST_SIZE, random);
+                return prefix;
+            default:
+                throw new IllegalArgumentException("Unknown dataset " + dataset + "!");
+        }
+    }
+
+    static int getLabelCount(String dataset) {
+        return dataset.equals("xor") ? 2 : SYNTHETIC_CLASSES;
+    }
+
+    private static void writeSplit(String prefix, int size, Random random) throws IOException {
+        try (PrintWriter vectors = new PrintWriter(prefix + "_vectors.csv");
+             PrintWriter labels = new PrintWriter(prefix + "_labels.csv")) {
+            StringBuilder line = new StringBuilder();
+            for (int k = 0; k < size; k++) {
+                line.setLength(0);
+                for (int i = 0; i < SYNTHETIC_DIMENSION; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    line.append(random.nextInt(256));
+                }
+                vectors.println(line);
+                labels.println(random.nextInt(SYNTHETIC_CLASSES));
+            }
+        }
+    }
+
+    /**
+     * A network with one hidden ReLU layer of the given width and the defaults of {@link pv021.main.Main}.
+     */
+    static NeuralNetwork build(Data data, int width, int batchSize, int threads, boolean batched) {
+        return new NeuralNetworkBuilder(data, 0.00184, 1, batchSize, 0.35, 0.9, 1, threads)
+                .setBatched(batched)
+                .addLayer(width, new ReLuFunction())
+                .build(new SoftMaxFunction());
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package pv021.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pv021.data.Data;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of the datasets by {@link Data}, from the CSV files or from the binary caches, and {@link
+ * NeuralNetwork#evaluate} of the test split.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class DataBenchmark {
+    @Param({"synthetic", "xor"})
+    public String dataset;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Path directory;
+    private String path;
+    private NeuralNetwork network;
+    private String predictionsPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("pv021-jmh");
+        path = BenchmarkData.prepare(dataset, directory);
+        Data data = new Data(path, BenchmarkData.getLabelCount(dataset), cache);  // creates the caches
+        network = BenchmarkData.build(data, 128, 1, threads, false);
+        predictionsPath = directory.resolve("predictions.csv").toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        network.close();
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public Data load() throws Exception {
+        return new Data(path, BenchmarkData.getLabelCount(dataset), cache);
+    }
+
+    @Benchmark
+    public void evaluate() throws Exception {
+        network.evaluate(predictionsPath, false);
+    }
+}
@@ -0,0 +1,83 @@
+package pv021.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pv021.data.Data;
+import pv021.data.Dataset;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-sample passes of the non-batched training: {@link NeuralNetwork#forward},
+ * {@link NeuralNetwork#backpropagate} and {@link NeuralNetwork#computeGradient}, run by the worker 0.
+ * <p>
+ * The backward passes start from the outputs of the forward pass of the first training vector, while their labels
+ * go through the labels of the training vectors, so that all the classes are targeted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class SamplePassBenchmark {
+    @Param({"synthetic", "xor"})
+    public String dataset;
+
+    @Param({"32", "128", "512"})
+    public int width;
+
+    private Path directory;
+    private NeuralNetwork network;
+    private Dataset train;
+    private int k;
+    private int labelIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("pv021-jmh");
+        Data data = new Data(BenchmarkData.prepare(dataset, directory), BenchmarkData.getLabelCount(dataset));
+        train = data.getTrain();
+        network = BenchmarkData.build(data, width, 1, 1, false);
+
+        // backpropagate and computeGradient work on the outputs of a forward pass
+        network.forward(train, 0, 0);
+        network.backpropagate(train.getLabel(0), 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        network.close();
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public void forward() {
+        k = k + 1 == train.getSize() ? 0 : k + 1;
+        network.forward(train, k, 0);
+    }
+
+    @Benchmark
+    public void backpropagate() {
+        labelIndex = labelIndex + 1 == train.getSize() ? 0 : labelIndex + 1;
+        network.backpropagate(train.getLabel(labelIndex), 0);
+    }
+
+    @Benchmark
+    public void computeGradient() {
+        network.computeGradient(0);
+    }
+}
@@ -0,0 +1,95 @@
+package pv021.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pv021.data.Data;
+import pv021.data.Dataset;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole training step, i.e. the parallel passes over a minibatch followed by {@link NeuralNetwork#updateWeights},
+ * and the update of the weights alone. The optimizers clear the gradients they apply, so the gradient of a fresh
+ * minibatch is accumulated by the per-sample passes of the first worker before every update, outside of
+ * the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class StepBenchmark {
+    @Param({"synthetic", "xor"})
+    public String dataset;
+
+    @Param({"128", "512"})
+    public int width;
+
+    @Param({"256", "2048"})
+    public int batchSize;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    private Path directory;
+    private NeuralNetwork network;
+    private Dataset train;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("pv021-jmh");
+        Data data = new Data(BenchmarkData.prepare(dataset, directory), BenchmarkData.getLabelCount(dataset));
+        train = data.getTrain();
+        network = BenchmarkData.build(data, width, batchSize, threads, batched);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        network.close();
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public void step() throws Exception {
+        network.step(train, Math.min(train.getSize(), batchSize));
+    }
+
+    @Benchmark
+    public void updateWeights(Gradient gradient) throws Exception {
+        network.updateWeights();
+    }
+
+    @State(Scope.Thread)
+    public static class Gradient {
+        private final Random random = new Random(42);
+
+        @Setup(Level.Invocation)
+        public void accumulate(StepBenchmark benchmark) {
+            Dataset train = benchmark.train;
+            for (int b = Math.min(train.getSize(), benchmark.batchSize); b > 0; b--) {
+                int k = random.nextInt(train.getSize());
+                benchmark.network.forward(train, k, 0);
+                benchmark.network.backpropagate(train.getLabel(k), 0);
+                benchmark.network.computeGradient(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package pv021.data;
+
+/**
+ * A dataset stored row-major in a single float array.
+ * <p>
+ * The k-th vector occupies the range [k * dimension, (k + 1) * dimension) of the values array.
+ */
+public class ArrayDataset extends Dataset {
+    private final float[] vectors;
+
+    public ArrayDataset(float[] vectors, int[] labels, int dimension) {
+        super(labels, dimension > 0 ? vectors.length / dimension : 0, dimension);
+        if (dimension <= 0 || vectors.length % dimension != 0) {
+            throw new IllegalArgumentException("Vector values do not form rows of dimension " + dimension + "!");
+        }
+        this.vectors = vectors;
+    }
+
+    @Override
+    public void copyVector(int k, double[] target, int targetOffset) {
+        int offset = offset(k);
+        for (int i = 0; i < getDimension(); i++) {
+            target[targetOffset + i] = vectors[offset + i];
+        }
+    }
+
+    @Override
+    public void copyVector(int k, float[] target, int targetOffset) {
+        System.arraycopy(vectors, offset(k), target, targetOffset, getDimension());
+    }
+
+    public float[] getVectors() {
+        return vectors;
+    }
+
+    public int offset(int k) {
+        return k * getDimension();
+    }
+}
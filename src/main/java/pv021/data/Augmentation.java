@@ -0,0 +1,59 @@
+package pv021.data;
+
+import java.util.Random;
+
+/**
+ * Random transformations of image vectors stored row by row: a shift by up to maxShift pixels in both
+ * directions, the uncovered pixels taking the smallest value of the image (the background of Fashion-MNIST),
+ * and a horizontal flip with probability 1/2. The clothes of Fashion-MNIST are left-right symmetric enough
+ * for the flips, but not upside-down ones.
+ */
+public class Augmentation {
+    private final int width;
+    private final int height;
+    private final int maxShift;
+    private final boolean horizontalFlip;
+
+    public Augmentation(int width, int height, int maxShift, boolean horizontalFlip) {
+        if (width <= 0 || height <= 0 || maxShift < 0 || maxShift >= Math.min(width, height)) {
+            throw new IllegalArgumentException("Shift must be smaller than the image!");
+        }
+        this.width = width;
+        this.height = height;
+        this.maxShift = maxShift;
+        this.horizontalFlip = horizontalFlip;
+    }
+
+    public int getDimension() {
+        return width * height;
+    }
+
+    /**
+     * Transforms the image at [offset, offset + width * height) of vectors in place.
+     *
+     * @param scratch a buffer of at least width * height values
+     */
+    public void apply(float[] vectors, int offset, Random random, float[] scratch) {
+        int shiftX = random.nextInt(2 * maxShift + 1) - maxShift;
+        int shiftY = random.nextInt(2 * maxShift + 1) - maxShift;
+        boolean flip = horizontalFlip && random.nextBoolean();
+        if (shiftX == 0 && shiftY == 0 && !flip) {
+            return;
+        }
+
+        int size = width * height;
+        float background = vectors[offset];
+        for (int p = 0; p < size; p++) {
+            background = Math.min(background, vectors[offset + p]);
+        }
+        System.arraycopy(vectors, offset, scratch, 0, size);
+        for (int y = 0; y < height; y++) {
+            int sourceY = y - shiftY;
+            for (int x = 0; x < width; x++) {
+                int sourceX = flip ? width - 1 - (x - shiftX) : x - shiftX;
+                boolean inside = sourceX >= 0 && sourceX < width && sourceY >= 0 && sourceY < height;
+                vectors[offset + y * width + x] = inside ? scratch[sourceY * width + sourceX] : background;
+            }
+        }
+    }
+}
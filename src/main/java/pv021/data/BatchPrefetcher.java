@@ -0,0 +1,109 @@
+package pv021.data;
+
+import java.io.Closeable;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Assembles the minibatches in a background thread: the producer draws the indices from the sampler, copies
+ * the vectors and labels into a contiguous staging dataset and augments them, while the network computes
+ * the previous minibatch.
+ * <p>
+ * There are two staging datasets. The free ones wait in a bounded queue, so the producer runs at most one
+ * minibatch ahead: a minibatch is {@link #request requested}, {@link #take taken} once it is needed and
+ * {@link #release released} once the step is done with it. The producer is the only user of the sampler and of
+ * the random generator between a request and the matching take, so the minibatches are the same as if they were
+ * drawn in the training thread.
+ */
+public class BatchPrefetcher implements Closeable {
+    private static final int BUFFERS = 2;
+
+    private final Dataset dataset;
+    private final Sampler sampler;
+    private final Augmentation augmentation;  // null for none
+    private final int batchSize;
+    private final int[] indices;
+    private final float[] scratch;
+    private final BlockingQueue<ArrayDataset> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final ExecutorService producer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "batch-prefetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<ArrayDataset> pending;
+
+    public BatchPrefetcher(Dataset dataset, Sampler sampler, Augmentation augmentation, int batchSize) {
+        if (augmentation != null && augmentation.getDimension() != dataset.getDimension()) {
+            throw new IllegalArgumentException("Augmentation does not match the dimension of the vectors!");
+        }
+        this.dataset = dataset;
+        this.sampler = sampler;
+        this.augmentation = augmentation;
+        this.batchSize = batchSize;
+        this.indices = new int[batchSize];
+        this.scratch = augmentation != null ? new float[dataset.getDimension()] : null;
+        for (int b = 0; b < BUFFERS; b++) {
+            free.add(new ArrayDataset(new float[batchSize * dataset.getDimension()], new int[batchSize],
+                    dataset.getDimension()));
+        }
+    }
+
+    /**
+     * Starts assembling the next minibatch into a free staging dataset, waiting for one to be released if
+     * there is none.
+     */
+    public void request(Random random) throws InterruptedException {
+        if (pending != null) {
+            throw new IllegalStateException("Minibatch was requested before the previous one was taken!");
+        }
+        ArrayDataset batch = free.take();
+        pending = producer.submit(() -> fill(batch, random));
+    }
+
+    /**
+     * Waits for the requested minibatch.
+     *
+     * @return the staging dataset holding the minibatch as its vectors [0, batchSize)
+     */
+    public ArrayDataset take() throws Exception {
+        if (pending == null) {
+            throw new IllegalStateException("No minibatch was requested!");
+        }
+        ArrayDataset batch = pending.get();
+        pending = null;
+        return batch;
+    }
+
+    /**
+     * Returns a taken staging dataset for the next requests.
+     */
+    public void release(ArrayDataset batch) {
+        free.add(batch);
+    }
+
+    private ArrayDataset fill(ArrayDataset batch, Random random) {
+        sampler.nextBatch(random, indices, batchSize);
+        float[] vectors = batch.getVectors();
+        int[] labels = batch.getLabels();
+        for (int b = 0; b < batchSize; b++) {
+            dataset.copyVector(indices[b], vectors, batch.offset(b));
+            labels[b] = dataset.getLabel(indices[b]);
+            if (augmentation != null) {
+                augmentation.apply(vectors, batch.offset(b), random, scratch);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Stops the producer, abandoning a requested minibatch which was not taken.
+     */
+    @Override
+    public void close() {
+        producer.shutdownNow();
+    }
+}
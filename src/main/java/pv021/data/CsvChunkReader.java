@@ -0,0 +1,144 @@
+package pv021.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A streaming counterpart of {@link CsvParser}, reading a CSV file of integer values a given number of rows
+ * at a time through a fixed buffer, so that the memory use does not depend on the size of the file.
+ * <p>
+ * Sum and sum of squares of all the values read so far are collected on the way, with the same definition
+ * of the statistics as in {@link CsvParser.Result}.
+ */
+public class CsvChunkReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private final int columns;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private boolean endOfFile;
+
+    // state of the line being parsed, which may span two reads of the buffer
+    private int column;
+    private int value;
+    private boolean negative;
+    private boolean fieldStarted;
+    private boolean digits;
+    private boolean content;
+
+    private long count;
+    private long sum;
+    private long sumOfSquares;
+
+    public CsvChunkReader(Path path, int columns) throws IOException {
+        this.path = path;
+        this.columns = columns;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer.flip();
+    }
+
+    /**
+     * Reads at most maxRows rows into target in row-major order.
+     *
+     * @return the number of rows read, 0 at the end of the file
+     */
+    public int read(float[] target, int maxRows) throws IOException {
+        int rows = 0;
+        while (rows < maxRows) {
+            int position = buffer.position();
+            int limit = buffer.limit();
+            while (position < limit && rows < maxRows) {
+                if (accept(bytes[position++], target, rows)) {
+                    rows++;
+                }
+            }
+            buffer.position(position);
+
+            if (rows < maxRows && !buffer.hasRemaining()) {
+                if (endOfFile) {
+                    break;
+                }
+                buffer.clear();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0) {
+                    endOfFile = true;
+                    if (accept((byte) '\n', target, rows)) {  // the last line without a line break
+                        rows++;
+                    }
+                    break;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return true if the byte completed the row
+     */
+    private boolean accept(byte b, float[] target, int row) {
+        if (b >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            fieldStarted = true;
+            digits = true;
+            content = true;
+        } else if (b == ',' || b == '\n') {
+            if (b == '\n' && !content && column == 0) {
+                return false;  // skip empty lines
+            }
+            if (column == columns) {
+                throw new IllegalStateException("Vectors in " + path + " have inconsistent size!");
+            }
+            if (!digits) {
+                throw new IllegalStateException("Unexpected empty field in " + path + "!");
+            }
+
+            int parsed = negative ? -value : value;
+            target[row * columns + column] = parsed;
+            count++;
+            sum += parsed;
+            sumOfSquares += (long) parsed * parsed;
+            value = 0;
+            negative = false;
+            fieldStarted = false;
+            digits = false;
+            column++;
+
+            if (b == '\n') {
+                if (column != columns) {
+                    throw new IllegalStateException("Vectors in " + path + " have inconsistent size!");
+                }
+                column = 0;
+                content = false;
+                return true;
+            }
+        } else if (b == '-' && !fieldStarted) {
+            negative = true;
+            fieldStarted = true;
+            content = true;
+        } else if (b != '\r') {
+            throw new IllegalStateException("Unexpected character '" + (char) b + "' in " + path + "!");
+        }
+        return false;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    public double getStandardDeviation() {
+        double mean = getMean();
+        return Math.sqrt((sumOfSquares - sum * mean) / (count - 1));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,256 @@
+package pv021.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A byte-level parser of CSV files containing integer values.
+ * <p>
+ * The file is memory-mapped and split into line-aligned chunks. The first pass counts the rows of
+ * every chunk, the second pass parses the chunks straight into one row-major float array, which is
+ * possible because the row offset of every chunk is known after the first pass. Sum and sum of
+ * squares of all values are collected during the second pass, so no extra pass is needed
+ * to compute normalization statistics. No objects are allocated per line or per field.
+ */
+public class CsvParser {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+    private final Path path;
+    private final boolean parallel;
+
+    public CsvParser(Path path, boolean parallel) {
+        this.path = path;
+        this.parallel = parallel;
+    }
+
+    public Result parse() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = splitChunks(channel);
+            int chunks = bounds.length - 1;
+
+            MappedByteBuffer[] buffers = new MappedByteBuffer[chunks];
+            for (int c = 0; c < chunks; c++) {
+                buffers[c] = channel.map(FileChannel.MapMode.READ_ONLY, bounds[c], bounds[c + 1] - bounds[c]);
+            }
+
+            int columns = chunks == 0 ? 0 : countColumns(buffers[0]);
+            int[] rowOffsets = new int[chunks + 1];
+            int[] rowCounts = new int[chunks];
+            chunkStream(chunks).forEach(c -> rowCounts[c] = countRows(buffers[c]));
+            for (int c = 0; c < chunks; c++) {
+                rowOffsets[c + 1] = Math.addExact(rowOffsets[c], rowCounts[c]);
+            }
+
+            int rows = rowOffsets[chunks];
+            float[] values = new float[Math.multiplyExact(rows, columns)];
+            long[] sums = new long[chunks];
+            long[] sumsOfSquares = new long[chunks];
+            chunkStream(chunks).forEach(c -> {
+                long[] statistics = parseChunk(buffers[c], values, rowOffsets[c] * columns, columns);
+                sums[c] = statistics[0];
+                sumsOfSquares[c] = statistics[1];
+            });
+
+            long sum = 0;
+            long sumOfSquares = 0;
+            for (int c = 0; c < chunks; c++) {
+                sum += sums[c];
+                sumOfSquares += sumsOfSquares[c];
+            }
+            return new Result(values, rows, columns, sum, sumOfSquares);
+        }
+    }
+
+    private IntStream chunkStream(int chunks) {
+        IntStream stream = IntStream.range(0, chunks);
+        return parallel ? stream.parallel() : stream;
+    }
+
+    /**
+     * Splits the file into chunks so that every chunk except the last one ends right after a line break.
+     */
+    private long[] splitChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return new long[]{0};
+        }
+
+        int parallelism = parallel ? Runtime.getRuntime().availableProcessors() * 4 : 1;
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (size + parallelism - 1) / parallelism);
+        chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE);
+
+        long[] bounds = new long[(int) ((size + chunkSize - 1) / chunkSize) + 1];
+        int count = 1;
+        ByteBuffer probe = ByteBuffer.allocate(256);
+        long position = 0;
+
+        while (position < size) {
+            long end = Math.min(size, position + chunkSize);
+            end = alignToLineEnd(channel, end, size, probe);
+            if (end - position > MAX_CHUNK_SIZE) {
+                throw new IllegalStateException("Line in " + path + " is too long!");
+            }
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[count++] = end;
+            position = end;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private long alignToLineEnd(FileChannel channel, long position, long size, ByteBuffer probe) throws IOException {
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static int countColumns(ByteBuffer buffer) {
+        int columns = 1;
+        for (int i = 0; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                break;
+            }
+            if (b == ',') {
+                columns++;
+            }
+        }
+        return columns;
+    }
+
+    private static int countRows(ByteBuffer buffer) {
+        int rows = 0;
+        boolean content = false;
+        for (int i = 0; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                if (content) {
+                    rows++;
+                }
+                content = false;
+            } else if (b != '\r') {
+                content = true;
+            }
+        }
+        return content ? rows + 1 : rows;
+    }
+
+    /**
+     * Parses all lines of the chunk into values starting at the given offset.
+     *
+     * @return the sum and the sum of squares of the parsed values
+     */
+    private long[] parseChunk(ByteBuffer buffer, float[] values, int offset, int columns) {
+        long sum = 0;
+        long sumOfSquares = 0;
+        int index = offset;
+        int column = 0;
+        int value = 0;
+        boolean negative = false;
+        boolean fieldStarted = false;
+        boolean digits = false;
+        boolean content = false;
+
+        for (int i = 0, limit = buffer.limit(); i <= limit; i++) {
+            byte b = i == limit ? (byte) '\n' : buffer.get(i);
+
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                fieldStarted = true;
+                digits = true;
+                content = true;
+            } else if (b == ',' || b == '\n') {
+                if (b == '\n' && !content && column == 0) {
+                    continue;  // skip empty lines
+                }
+                if (column == columns) {
+                    throw new IllegalStateException("Vectors in " + path + " have inconsistent size!");
+                }
+                if (!digits) {
+                    throw new IllegalStateException("Unexpected empty field in " + path + "!");
+                }
+
+                int parsed = negative ? -value : value;
+                values[index++] = parsed;
+                sum += parsed;
+                sumOfSquares += (long) parsed * parsed;
+                value = 0;
+                negative = false;
+                fieldStarted = false;
+                digits = false;
+                column++;
+
+                if (b == '\n') {
+                    if (column != columns) {
+                        throw new IllegalStateException("Vectors in " + path + " have inconsistent size!");
+                    }
+                    column = 0;
+                    content = false;
+                }
+            } else if (b == '-' && !fieldStarted) {
+                negative = true;
+                fieldStarted = true;
+                content = true;
+            } else if (b != '\r') {
+                throw new IllegalStateException("Unexpected character '" + (char) b + "' in " + path + "!");
+            }
+        }
+        return new long[]{sum, sumOfSquares};
+    }
+
+    /**
+     * The parsed values in row-major order together with their statistics.
+     */
+    public static class Result {
+        private final float[] values;
+        private final int rows;
+        private final int columns;
+        private final long sum;
+        private final long sumOfSquares;
+
+        private Result(float[] values, int rows, int columns, long sum, long sumOfSquares) {
+            this.values = values;
+            this.rows = rows;
+            this.columns = columns;
+            this.sum = sum;
+            this.sumOfSquares = sumOfSquares;
+        }
+
+        public float[] getValues() {
+            return values;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getColumns() {
+            return columns;
+        }
+
+        public double getMean() {
+            return values.length == 0 ? 0.0 : (double) sum / values.length;
+        }
+
+        public double getStandardDeviation() {
+            double mean = getMean();
+            return Math.sqrt((sumOfSquares - sum * mean) / (values.length - 1));
+        }
+    }
+}
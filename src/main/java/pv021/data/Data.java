@@ -1,159 +1,144 @@
 package pv021.data;
 
 import java.io.IOException;
-import java.io.DataInputStream;
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * The class represents a dataset containing training and testing vectors and labels.
  */
 public class Data {
-    private final List<List<Double>> trainVectors;
-    private final List<List<Double>> testVectors;
-    private final List<List<Integer>> trainLabels;
-    private final List<List<Integer>> testLabels;
+    private final Dataset train;
+    private final Dataset test;
     private final int labelCount;
+    private final boolean cache;
 
     public Data(String path, int labelCount) throws IOException {
+        this(path, labelCount, false);
+    }
+
+    /**
+     * @param cache whether to read the splits from (and create) binary caches next to the CSV files
+     */
+    public Data(String path, int labelCount, boolean cache) throws IOException {
+        this(path, labelCount, cache, true);
+    }
+
+    /**
+     * @param cache    whether to read the splits from (and create) binary caches next to the CSV files
+     * @param loadTest whether to load the test split, false if the test vectors are streamed from the CSV file
+     *                 instead, e.g. by {@link pv021.network.PredictionPipeline}
+     */
+    public Data(String path, int labelCount, boolean cache, boolean loadTest) throws IOException {
         this.labelCount = labelCount;
-        this.trainVectors = normalizeVectors(loadVectors(path, true));
-        this.testVectors = normalizeVectors(loadVectors(path, false));
-        this.testLabels = loadLabels(path, false);
-        this.trainLabels = loadLabels(path, true);
+        this.cache = cache;
+        this.train = loadDataset(path, true);
+        this.test = loadTest ? loadDataset(path, false) : null;
         checkData();
     }
 
     private void checkData() {
-        if(trainVectors.isEmpty()){
+        if(train.getSize() == 0){
             throw new IllegalStateException("Train Vectors are empty!");
         }
 
-        if(testVectors.isEmpty()){
-            throw new IllegalStateException("Test Vectors are empty!");
+        if(train.getSize() != train.getLabels().length){
+            throw new IllegalStateException("Train Vectors size is not equal to Train Labels size!");
         }
 
-        if(trainVectors.size() != trainLabels.size()){
-            throw new IllegalStateException("Train Vectors size is not equal to Train Labels size!");
+        if(!Arrays.stream(train.getLabels()).allMatch(label -> label >= 0 && label < labelCount)){
+            throw new IllegalStateException("Train Labels are out of range!");
         }
 
-        if(testLabels.size() != testVectors.size()){
-            throw new IllegalStateException("Test Vectors size is not equal to Test Labels size!");
+        if(test == null){
+            return;
         }
 
-        if(!trainVectors.stream().allMatch(integers -> integers.size() == trainVectors.get(0).size())){
-            throw new IllegalStateException("Train Vectors have inconsistent size!");
+        if(test.getSize() == 0){
+            throw new IllegalStateException("Test Vectors are empty!");
         }
 
-        if(!testVectors.stream().allMatch(integers -> integers.size() == testVectors.get(0).size())){
-            throw new IllegalStateException("Test Vectors have inconsistent size!");
+        if(test.getSize() != test.getLabels().length){
+            throw new IllegalStateException("Test Vectors size is not equal to Test Labels size!");
         }
 
-        if(testVectors.get(0).size() != trainVectors.get(0).size()){
+        if(test.getDimension() != train.getDimension()){
             throw new IllegalStateException("Train Vectors have different size than Test vectors!");
         }
+
+        if(!Arrays.stream(test.getLabels()).allMatch(label -> label >= 0 && label < labelCount)){
+            throw new IllegalStateException("Test Labels are out of range!");
+        }
     }
 
     public int getLabelCount() {
         return labelCount;
     }
 
-    private List<List<Integer>> loadVectors(String path, boolean train) throws IOException {
-        String vectorsPath = path + (train ? "_train_vectors.csv" : "_test_vectors.csv");
-
-        try(DataInputStream in = new DataInputStream(new FileInputStream(vectorsPath))){
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(in));
-            List<List<Integer>> result = new ArrayList<>();
-            String line;
-
-            while ((line = bufferedReader.readLine()) != null) {
-                List<Integer> vector = new ArrayList<>();
-                String[] numbers = line.split(",");
+    public int getDimension() {
+        return train.getDimension();
+    }
 
-                for (String element : numbers) {
-                    int elementInt = Integer.parseInt(element);
-                    vector.add(elementInt);
-                }
-                result.add(vector);
+    private Dataset loadDataset(String path, boolean train) throws IOException {
+        String vectorsPath = path + (train ? "_train_vectors.csv" : "_test_vectors.csv");
+        String labelsPath = path + (train ? "_train_labels.csv" : "_test_labels.csv");
+        DatasetCache datasetCache = new DatasetCache(Path.of(path + (train ? "_train.cache" : "_test.cache")),
+                Path.of(vectorsPath), Path.of(labelsPath), labelCount);
+
+        if (cache) {
+            Dataset cached = datasetCache.load();
+            if (cached != null) {
+                return cached;
             }
-            return result;
         }
-    }
 
-    private List<List<Double>> normalizeVectors(List<List<Integer>> vectors) {
-        double mean = calculateMean(vectors);
-        double std  = calculateStandardDeviation(vectors, mean);
+        CsvParser.Result vectors = new CsvParser(Path.of(vectorsPath), true).parse();
+        int[] labels = loadLabels(labelsPath);
+        double mean = vectors.getMean();
+        double std = vectors.getStandardDeviation();
 
-        List<List<Double>> normalizedVectors = new ArrayList<>();
-
-        for (List<Integer> vector : vectors) {
-            List<Double> normalizedVector = new ArrayList<>();
-            for (int value : vector) {
-                normalizedVector.add((value - mean) / std);
+        if (cache && datasetCache.store(vectors.getValues(), labels, vectors.getColumns(), mean, std)) {
+            Dataset cached = datasetCache.load();
+            if (cached != null) {
+                return cached;
             }
-            normalizedVectors.add(normalizedVector);
         }
-        return normalizedVectors;
-    }
 
-    private double calculateMean(List<List<Integer>> vectors) {
-        return vectors.stream()
-                .flatMapToInt(list -> list.stream().mapToInt(Integer::intValue))
-                .average()
-                .orElse(0.0);
+        normalizeVectors(vectors.getValues(), mean, std);
+        return new ArrayDataset(vectors.getValues(), labels, vectors.getColumns());
     }
 
-    private double calculateStandardDeviation(List<List<Integer>> vectors, double mean) {
-        long count = vectors.stream().mapToLong(List::size).sum();
-
-        double sumOfSquares = vectors.stream()
-                .flatMapToInt(list -> list.stream().mapToInt(Integer::intValue))
-                .mapToDouble(value -> Math.pow(value - mean, 2))
-                .sum();
-
-        return Math.sqrt(sumOfSquares / (count - 1));
+    /**
+     * Normalizes raw values in place, {@link MappedDataset} builds its lookup table with it as well.
+     */
+    static void normalizeVectors(float[] vectors, double mean, double std) {
+        float scale = (float) (1 / std);
+        float shift = (float) (-mean / std);
+        IntStream.range(0, vectors.length).parallel().forEach(i -> vectors[i] = vectors[i] * scale + shift);
     }
 
-    private List<List<Integer>> loadLabels(String path, boolean train) throws IOException {
-        String vectorsPath = path + (train ? "_train_labels.csv" : "_test_labels.csv");
-        try(DataInputStream in = new DataInputStream(new FileInputStream(vectorsPath))){
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(in));
-
-            List<List<Integer>> result = new ArrayList<>();
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                int value = Integer.parseInt(line);
-                result.add(oneHotEncode(value, labelCount));
-            }
-            return result;
+    private int[] loadLabels(String labelsPath) throws IOException {
+        CsvParser.Result labels = new CsvParser(Path.of(labelsPath), false).parse();
+        if (labels.getRows() > 0 && labels.getColumns() != 1) {
+            throw new IllegalStateException("Labels in " + labelsPath + " must have a single column!");
         }
-    }
 
-    private List<Integer> oneHotEncode(int value, int labelCount) {
-        List<Integer> result = new ArrayList<>();
-        for(int i = 0; i < labelCount; i++){
-            result.add(i == value ? 1 : 0);
+        int[] result = new int[labels.getRows()];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = (int) labels.getValues()[k];
         }
-
         return result;
     }
 
-    public List<List<Double>> getTrainVectors() {
-        return trainVectors;
-    }
-
-    public List<List<Double>> getTestVectors() {
-        return testVectors;
+    public Dataset getTrain() {
+        return train;
     }
 
-    public List<List<Integer>> getTrainLabels() {
-        return trainLabels;
-    }
-
-    public List<List<Integer>> getTestLabels() {
-        return testLabels;
+    public Dataset getTest() {
+        if (test == null) {
+            throw new IllegalStateException("Test split was not loaded!");
+        }
+        return test;
     }
 }
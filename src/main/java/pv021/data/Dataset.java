@@ -0,0 +1,45 @@
+package pv021.data;
+
+/**
+ * The class represents a dense set of vectors of equal dimension together with the class index of each vector.
+ * <p>
+ * Implementations decide how the normalized values are stored, the network only reads them
+ * one vector at a time through {@link #copyVector(int, double[], int)}.
+ */
+public abstract class Dataset {
+    private final int[] labels;
+    private final int size;
+    private final int dimension;
+
+    protected Dataset(int[] labels, int size, int dimension) {
+        this.labels = labels;
+        this.size = size;
+        this.dimension = dimension;
+    }
+
+    /**
+     * Copies the normalized values of the k-th vector into target, starting at targetOffset.
+     */
+    public abstract void copyVector(int k, double[] target, int targetOffset);
+
+    /**
+     * Copies the normalized values of the k-th vector into target, starting at targetOffset.
+     */
+    public abstract void copyVector(int k, float[] target, int targetOffset);
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int[] getLabels() {
+        return labels;
+    }
+
+    public int getLabel(int k) {
+        return labels[k];
+    }
+}
@@ -0,0 +1,153 @@
+package pv021.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary cache of a parsed dataset split, stored next to its source CSV files.
+ * <p>
+ * Format (little endian):
+ * <pre>
+ * int    magic, int version
+ * long   vectors CSV size, long vectors CSV mtime, long labels CSV size, long labels CSV mtime
+ * int    rows, int dimension, int labelCount
+ * double mean, double std
+ * byte[rows * dimension] raw unsigned values
+ * byte[rows]             labels
+ * </pre>
+ * The cache is valid only while the sizes and modification times of both CSV files match the header.
+ */
+public class DatasetCache {
+    private static final int MAGIC = 0x50563231;  // "PV21"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 4 * Long.BYTES + 3 * Integer.BYTES + 2 * Double.BYTES;
+
+    private final Path cachePath;
+    private final Path vectorsPath;
+    private final Path labelsPath;
+    private final int labelCount;
+
+    public DatasetCache(Path cachePath, Path vectorsPath, Path labelsPath, int labelCount) {
+        this.cachePath = cachePath;
+        this.vectorsPath = vectorsPath;
+        this.labelsPath = labelsPath;
+        this.labelCount = labelCount;
+    }
+
+    /**
+     * Maps the cache file if it exists and still matches the source CSV files.
+     *
+     * @return the mapped dataset or null if the cache is missing or stale
+     */
+    public MappedDataset load() throws IOException {
+        if (!Files.isRegularFile(cachePath)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != Files.size(vectorsPath)
+                    || buffer.getLong() != Files.getLastModifiedTime(vectorsPath).toMillis()
+                    || buffer.getLong() != Files.size(labelsPath)
+                    || buffer.getLong() != Files.getLastModifiedTime(labelsPath).toMillis()) {
+                return null;
+            }
+
+            int rows = buffer.getInt();
+            int dimension = buffer.getInt();
+            if (buffer.getInt() != labelCount || size != HEADER_SIZE + (long) rows * (dimension + 1)) {
+                return null;
+            }
+            double mean = buffer.getDouble();
+            double std = buffer.getDouble();
+
+            int[] labels = new int[rows];
+            int labelsOffset = HEADER_SIZE + rows * dimension;
+            for (int k = 0; k < rows; k++) {
+                labels[k] = buffer.get(labelsOffset + k) & 0xFF;
+            }
+            return new MappedDataset(buffer, HEADER_SIZE, labels, dimension, mean, std);
+        }
+    }
+
+    /**
+     * Writes raw (not normalized) values and labels into the cache file.
+     *
+     * @return false if the values do not fit into unsigned bytes and thus cannot be cached
+     */
+    public boolean store(float[] rawVectors, int[] labels, int dimension, double mean, double std) throws IOException {
+        if (!fitsUnsignedByte(rawVectors, labels)) {
+            return false;
+        }
+
+        // write into a temporary file first so that concurrent readers never map a half-written cache
+        Path temporaryPath = Files.createTempFile(cachePath.toAbsolutePath().getParent(), "dataset", ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION)
+                    .putLong(Files.size(vectorsPath))
+                    .putLong(Files.getLastModifiedTime(vectorsPath).toMillis())
+                    .putLong(Files.size(labelsPath))
+                    .putLong(Files.getLastModifiedTime(labelsPath).toMillis())
+                    .putInt(labels.length).putInt(dimension).putInt(labelCount)
+                    .putDouble(mean).putDouble(std);
+
+            for (float value : rawVectors) {
+                if (!buffer.hasRemaining()) {
+                    drain(channel, buffer);
+                }
+                buffer.put((byte) value);
+            }
+            for (int label : labels) {
+                if (!buffer.hasRemaining()) {
+                    drain(channel, buffer);
+                }
+                buffer.put((byte) label);
+            }
+            drain(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+
+        Files.move(temporaryPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static boolean fitsUnsignedByte(float[] rawVectors, int[] labels) {
+        for (float value : rawVectors) {
+            if (value < 0 || value > 255) {
+                return false;
+            }
+        }
+        for (int label : labels) {
+            if (label < 0 || label > 255) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
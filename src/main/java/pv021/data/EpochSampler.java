@@ -0,0 +1,42 @@
+package pv021.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * See {@link Sampling#EPOCH}. The state is the order of the samples followed by the position in it.
+ */
+public class EpochSampler extends Sampler {
+    private int position;
+
+    public EpochSampler(int[] samples) {
+        super(samples);
+        position = samples.length;  // the first minibatch starts an epoch
+    }
+
+    @Override
+    public void nextBatch(Random random, int[] batch, int batchSize) {
+        if (position + batchSize > samples.length) {
+            shuffle(samples, 0, samples.length, random);
+            position = 0;
+        }
+        System.arraycopy(samples, position, batch, 0, batchSize);
+        position += batchSize;
+    }
+
+    @Override
+    public int[] getState() {
+        int[] state = Arrays.copyOf(samples, samples.length + 1);
+        state[samples.length] = position;
+        return state;
+    }
+
+    @Override
+    public void setState(int[] state) {
+        if (state.length != samples.length + 1) {
+            throw new IllegalStateException("Checkpoint was trained on a different number of samples!");
+        }
+        System.arraycopy(state, 0, samples, 0, samples.length);
+        position = state[samples.length];
+    }
+}
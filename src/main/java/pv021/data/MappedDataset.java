@@ -0,0 +1,42 @@
+package pv021.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A dataset whose raw 8-bit values are read lazily from a (memory-mapped) buffer.
+ * <p>
+ * The values are normalized on read through a 256-entry lookup table, so the buffer is never copied
+ * to the heap and the pages of a mapped file are shared by all processes reading the same cache.
+ * The table is computed by the same code as the values of an uncached dataset, so both are bit for bit equal.
+ */
+public class MappedDataset extends Dataset {
+    private final ByteBuffer vectors;
+    private final int vectorsOffset;
+    private final float[] normalized = new float[256];
+
+    public MappedDataset(ByteBuffer vectors, int vectorsOffset, int[] labels, int dimension, double mean, double std) {
+        super(labels, labels.length, dimension);
+        this.vectors = vectors;
+        this.vectorsOffset = vectorsOffset;
+        for (int value = 0; value < normalized.length; value++) {
+            normalized[value] = value;
+        }
+        Data.normalizeVectors(normalized, mean, std);
+    }
+
+    @Override
+    public void copyVector(int k, double[] target, int targetOffset) {
+        int offset = vectorsOffset + k * getDimension();
+        for (int i = 0; i < getDimension(); i++) {
+            target[targetOffset + i] = normalized[vectors.get(offset + i) & 0xFF];
+        }
+    }
+
+    @Override
+    public void copyVector(int k, float[] target, int targetOffset) {
+        int offset = vectorsOffset + k * getDimension();
+        for (int i = 0; i < getDimension(); i++) {
+            target[targetOffset + i] = normalized[vectors.get(offset + i) & 0xFF];
+        }
+    }
+}
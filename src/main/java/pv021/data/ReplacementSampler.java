@@ -0,0 +1,19 @@
+package pv021.data;
+
+import java.util.Random;
+
+/**
+ * See {@link Sampling#REPLACEMENT}.
+ */
+public class ReplacementSampler extends Sampler {
+    public ReplacementSampler(int[] samples) {
+        super(samples);
+    }
+
+    @Override
+    public void nextBatch(Random random, int[] batch, int batchSize) {
+        for (int b = 0; b < batchSize; b++) {
+            batch[b] = samples[random.nextInt(samples.length)];
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package pv021.data;
+
+import java.util.Random;
+
+/**
+ * Chooses the minibatches of the training samples.
+ * <p>
+ * The samples are kept in a primitive permutation owned by the sampler, and every minibatch is written into
+ * a contiguous buffer of indices given by the caller, so the sampling allocates nothing. The state of the sampler
+ * besides the random generator is an int array, which is saved in checkpoints.
+ */
+public abstract class Sampler {
+    protected final int[] samples;
+
+    protected Sampler(int[] samples) {
+        this.samples = samples.clone();
+    }
+
+    /**
+     * @param samples the indices of the training vectors to sample from
+     * @param dataset the training vectors, used for their labels
+     */
+    public static Sampler create(Sampling sampling, int[] samples, Dataset dataset) {
+        switch (sampling) {
+            case EPOCH:
+                return new EpochSampler(samples);
+            case REPLACEMENT:
+                return new ReplacementSampler(samples);
+            case STRATIFIED:
+                return new StratifiedSampler(samples, dataset);
+            default:
+                return new ShuffleSampler(samples);
+        }
+    }
+
+    /**
+     * @return the number of the samples
+     */
+    public int getSize() {
+        return samples.length;
+    }
+
+    /**
+     * Writes the indices of the next minibatch into batch[0, batchSize).
+     */
+    public abstract void nextBatch(Random random, int[] batch, int batchSize);
+
+    /**
+     * @return a copy of the state of the sampler, by default the current order of the samples
+     */
+    public int[] getState() {
+        return samples.clone();
+    }
+
+    public void setState(int[] state) {
+        if (state.length != samples.length) {
+            throw new IllegalStateException("Checkpoint was trained on a different number of samples!");
+        }
+        System.arraycopy(state, 0, samples, 0, samples.length);
+    }
+
+    /**
+     * Shuffles values[from, to) like {@link java.util.Collections#shuffle(java.util.List, Random)} shuffles a list,
+     * so the order is the same for the same random generator.
+     */
+    protected static void shuffle(int[] values, int from, int to, Random random) {
+        for (int i = to - from; i > 1; i--) {
+            int other = from + random.nextInt(i);
+            int value = values[from + i - 1];
+            values[from + i - 1] = values[other];
+            values[other] = value;
+        }
+    }
+}
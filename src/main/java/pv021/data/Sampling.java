@@ -0,0 +1,29 @@
+package pv021.data;
+
+/**
+ * The ways of choosing the minibatches of the training samples, see {@link Sampler}.
+ */
+public enum Sampling {
+    /**
+     * All the samples are shuffled at every step and the minibatch is the beginning of the order,
+     * the original sampling of the network.
+     */
+    SHUFFLE,
+
+    /**
+     * The samples are shuffled once per epoch and the minibatches are its contiguous parts, so every sample
+     * is used once per epoch. The remainder shorter than a minibatch is skipped.
+     */
+    EPOCH,
+
+    /**
+     * Every sample of the minibatch is drawn independently, with replacement.
+     */
+    REPLACEMENT,
+
+    /**
+     * Every minibatch holds the classes in the proportions of the whole training set, the samples of each class
+     * being walked through in epochs like by {@link #EPOCH}.
+     */
+    STRATIFIED
+}
@@ -0,0 +1,18 @@
+package pv021.data;
+
+import java.util.Random;
+
+/**
+ * See {@link Sampling#SHUFFLE}.
+ */
+public class ShuffleSampler extends Sampler {
+    public ShuffleSampler(int[] samples) {
+        super(samples);
+    }
+
+    @Override
+    public void nextBatch(Random random, int[] batch, int batchSize) {
+        shuffle(samples, 0, samples.length, random);
+        System.arraycopy(samples, 0, batch, 0, batchSize);
+    }
+}
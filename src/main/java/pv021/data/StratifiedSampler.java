@@ -0,0 +1,95 @@
+package pv021.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * See {@link Sampling#STRATIFIED}.
+ * <p>
+ * The samples are grouped by class, the class c occupying [classStarts[c], classStarts[c + 1]) of the order.
+ * Every minibatch takes from each class its share of the batch size rounded by the largest remainders, and each
+ * class is reshuffled once all its samples have been taken. The state is the order of the samples followed by
+ * the position within every class.
+ */
+public class StratifiedSampler extends Sampler {
+    private final int[] classStarts;
+    private final int[] positions;
+    private final int[] quotas;
+    private final double[] remainders;
+
+    public StratifiedSampler(int[] samples, Dataset dataset) {
+        super(samples);
+        int classes = 0;
+        for (int k : samples) {
+            classes = Math.max(classes, dataset.getLabel(k) + 1);
+        }
+
+        classStarts = new int[classes + 1];
+        for (int k : samples) {
+            classStarts[dataset.getLabel(k) + 1]++;
+        }
+        for (int c = 0; c < classes; c++) {
+            classStarts[c + 1] += classStarts[c];
+        }
+        int[] next = Arrays.copyOf(classStarts, classes);
+        for (int k : samples) {
+            this.samples[next[dataset.getLabel(k)]++] = k;
+        }
+
+        positions = new int[classes];  // every class starts at its end, i.e. with a new epoch
+        for (int c = 0; c < classes; c++) {
+            positions[c] = classStarts[c + 1];
+        }
+        quotas = new int[classes];
+        remainders = new double[classes];
+    }
+
+    @Override
+    public void nextBatch(Random random, int[] batch, int batchSize) {
+        int classes = quotas.length;
+        int assigned = 0;
+        for (int c = 0; c < classes; c++) {
+            double share = batchSize * (double) (classStarts[c + 1] - classStarts[c]) / samples.length;
+            quotas[c] = (int) share;
+            remainders[c] = share - quotas[c];
+            assigned += quotas[c];
+        }
+        for (; assigned < batchSize; assigned++) {  // the largest remainders get one more sample
+            int largest = 0;
+            for (int c = 1; c < classes; c++) {
+                if (remainders[c] > remainders[largest]) {
+                    largest = c;
+                }
+            }
+            quotas[largest]++;
+            remainders[largest] = -1;
+        }
+
+        int b = 0;
+        for (int c = 0; c < classes; c++) {
+            for (int q = 0; q < quotas[c]; q++) {
+                if (positions[c] == classStarts[c + 1]) {
+                    shuffle(samples, classStarts[c], classStarts[c + 1], random);
+                    positions[c] = classStarts[c];
+                }
+                batch[b++] = samples[positions[c]++];
+            }
+        }
+    }
+
+    @Override
+    public int[] getState() {
+        int[] state = Arrays.copyOf(samples, samples.length + positions.length);
+        System.arraycopy(positions, 0, state, samples.length, positions.length);
+        return state;
+    }
+
+    @Override
+    public void setState(int[] state) {
+        if (state.length != samples.length + positions.length) {
+            throw new IllegalStateException("Checkpoint was trained on a different number of samples!");
+        }
+        System.arraycopy(state, 0, samples, 0, samples.length);
+        System.arraycopy(state, samples.length, positions, 0, positions.length);
+    }
+}
@@ -0,0 +1,56 @@
+package pv021.distributed;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Path;
+
+/**
+ * The processes of a data-parallel training on one host, which form a ring in the order of their ranks.
+ * The process with a given rank listens either on TCP port basePort + rank, or on the Unix domain socket
+ * rank.socket in a directory shared by the processes.
+ */
+public final class ProcessGroup {
+    private final int rank;
+    private final int size;
+    private final String host;
+    private final int basePort;
+    private final Path socketDirectory;
+
+    private ProcessGroup(int rank, int size, String host, int basePort, Path socketDirectory) {
+        if (size <= 0 || rank < 0 || rank >= size) {
+            throw new IllegalArgumentException("Rank " + rank + " is not in a group of " + size + " processes!");
+        }
+        this.rank = rank;
+        this.size = size;
+        this.host = host;
+        this.basePort = basePort;
+        this.socketDirectory = socketDirectory;
+    }
+
+    public static ProcessGroup tcp(int rank, int size, String host, int basePort) {
+        return new ProcessGroup(rank, size, host, basePort, null);
+    }
+
+    public static ProcessGroup unixDomain(int rank, int size, Path socketDirectory) {
+        return new ProcessGroup(rank, size, null, 0, socketDirectory);
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    StandardProtocolFamily getProtocolFamily() {
+        return socketDirectory == null ? StandardProtocolFamily.INET : StandardProtocolFamily.UNIX;
+    }
+
+    SocketAddress getAddress(int rank) {
+        return socketDirectory == null ? new InetSocketAddress(host, basePort + rank)
+                : UnixDomainSocketAddress.of(socketDirectory.resolve(rank + ".socket"));
+    }
+}
@@ -0,0 +1,197 @@
+package pv021.distributed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+
+/**
+ * Sums arrays of doubles over all the processes of a group by a ring all-reduce over TCP or Unix domain sockets.
+ * <p>
+ * Every process sends to the next rank and receives from the previous one. The array is split into one chunk
+ * per process; in the first size - 1 rounds every process adds the chunk received from its predecessor to its own
+ * and passes the sum on (reduce-scatter), so that each chunk ends up fully summed in one process, and in
+ * the next size - 1 rounds the summed chunks are passed around the ring (all-gather). Every process thus sends
+ * about twice the array regardless of the number of processes, and all the processes end up with bitwise equal
+ * sums, each chunk being added up in the same order everywhere.
+ * <p>
+ * The channels are non-blocking and the sending and the receiving of a round are multiplexed by a selector,
+ * through direct buffers in the native byte order.
+ */
+public class RingAllReduce implements Closeable {
+    private static final long CONNECT_TIMEOUT_MILLIS = 60_000;
+    private static final long CONNECT_RETRY_MILLIS = 50;
+
+    private final int rank;
+    private final int size;
+    private final SocketChannel next;
+    private final SocketChannel previous;
+    private final Selector selector;
+    private final SelectionKey nextKey;
+    private final SelectionKey previousKey;
+    private ByteBuffer sendBuffer = ByteBuffer.allocateDirect(0);
+    private ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(0);
+
+    private RingAllReduce(int rank, int size, SocketChannel next, SocketChannel previous) throws IOException {
+        this.rank = rank;
+        this.size = size;
+        this.next = next;
+        this.previous = previous;
+        this.selector = Selector.open();
+        next.configureBlocking(false);
+        previous.configureBlocking(false);
+        this.nextKey = next.register(selector, 0);
+        this.previousKey = previous.register(selector, 0);
+    }
+
+    /**
+     * Connects the process to its neighbours in the ring, waiting for the other processes to start.
+     */
+    public static RingAllReduce connect(ProcessGroup group) throws IOException, InterruptedException {
+        int rank = group.getRank();
+        int size = group.getSize();
+        SocketAddress address = group.getAddress(rank);
+        if (address instanceof UnixDomainSocketAddress unixAddress) {
+            Files.deleteIfExists(unixAddress.getPath());  // left over by a previous run
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open(group.getProtocolFamily())) {
+            server.bind(address);
+
+            SocketChannel next = connect(group.getAddress((rank + 1) % size));
+            SocketChannel previous = server.accept();
+            if (group.getProtocolFamily() == StandardProtocolFamily.INET) {
+                for (SocketChannel channel : new SocketChannel[]{next, previous}) {
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+            }
+
+            // the ranks are exchanged to catch processes started with a wrong configuration
+            ByteBuffer handshake = ByteBuffer.allocate(Integer.BYTES).putInt(0, rank);
+            while (handshake.hasRemaining()) {
+                next.write(handshake);
+            }
+            handshake.clear();
+            while (handshake.hasRemaining()) {
+                if (previous.read(handshake) < 0) {
+                    throw new IllegalStateException("Process " + rank + " lost its predecessor!");
+                }
+            }
+            int previousRank = handshake.getInt(0);
+            if (previousRank != (rank + size - 1) % size) {
+                throw new IllegalStateException("Process " + rank + " is connected to process " + previousRank + "!");
+            }
+            return new RingAllReduce(rank, size, next, previous);
+        } finally {
+            if (address instanceof UnixDomainSocketAddress unixAddress) {
+                Files.deleteIfExists(unixAddress.getPath());
+            }
+        }
+    }
+
+    private static SocketChannel connect(SocketAddress address) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                return SocketChannel.open(address);
+            } catch (SocketException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(CONNECT_RETRY_MILLIS);  // the next process is not listening yet
+            }
+        }
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Replaces the values by their sums over all the processes. Every process has to call it with an array
+     * of the same length.
+     */
+    public void allReduce(double[] values) throws IOException {
+        if (size == 1) {
+            return;
+        }
+        int maxChunk = (values.length + size - 1) / size;
+        if (sendBuffer.capacity() < maxChunk * Double.BYTES) {
+            sendBuffer = ByteBuffer.allocateDirect(maxChunk * Double.BYTES).order(ByteOrder.nativeOrder());
+            receiveBuffer = ByteBuffer.allocateDirect(maxChunk * Double.BYTES).order(ByteOrder.nativeOrder());
+        }
+
+        for (int round = 0; round < size - 1; round++) {  // reduce-scatter
+            exchange(values, chunk(rank - round), chunk(rank - round - 1), true);
+        }
+        for (int round = 0; round < size - 1; round++) {  // all-gather of the chunk summed by every process
+            exchange(values, chunk(rank + 1 - round), chunk(rank - round), false);
+        }
+    }
+
+    private int chunk(int index) {
+        return ((index % size) + size) % size;
+    }
+
+    /**
+     * Sends the chunk sent to the next process while receiving the chunk received from the previous one,
+     * which is added to the values or replaces them.
+     */
+    private void exchange(double[] values, int sent, int received, boolean add) throws IOException {
+        int sentFrom = sent * values.length / size;
+        int sentTo = (sent + 1) * values.length / size;
+        int receivedFrom = received * values.length / size;
+        int receivedTo = (received + 1) * values.length / size;
+
+        sendBuffer.clear();
+        sendBuffer.asDoubleBuffer().put(values, sentFrom, sentTo - sentFrom);
+        sendBuffer.limit((sentTo - sentFrom) * Double.BYTES);
+        receiveBuffer.clear();
+        receiveBuffer.limit((receivedTo - receivedFrom) * Double.BYTES);
+
+        while (sendBuffer.hasRemaining() || receiveBuffer.hasRemaining()) {
+            nextKey.interestOps(sendBuffer.hasRemaining() ? SelectionKey.OP_WRITE : 0);
+            previousKey.interestOps(receiveBuffer.hasRemaining() ? SelectionKey.OP_READ : 0);
+            selector.select();
+            selector.selectedKeys().clear();
+
+            if (sendBuffer.hasRemaining()) {
+                next.write(sendBuffer);
+            }
+            if (receiveBuffer.hasRemaining() && previous.read(receiveBuffer) < 0) {
+                throw new IllegalStateException("Process " + rank + " lost its predecessor!");
+            }
+        }
+
+        receiveBuffer.flip();
+        DoubleBuffer chunk = receiveBuffer.asDoubleBuffer();
+        if (add) {
+            for (int i = receivedFrom; i < receivedTo; i++) {
+                values[i] += chunk.get();
+            }
+        } else {
+            chunk.get(values, receivedFrom, receivedTo - receivedFrom);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        selector.close();
+        next.close();
+        previous.close();
+    }
+}
@@ -1,7 +1,40 @@
 package pv021.function.activation;
 
+/**
+ * An activation function applied to the potentials of a whole layer at once.
+ * <p>
+ * The outputs of a layer start with the constant bias output, so they are addressed through an offset.
+ * The derivatives are expressed through the outputs, which is what the backward pass has at hand.
+ */
 public abstract class ActivationFunction {
-    public abstract double computeOutput(double sum, double potential, double max);
-    public abstract double apply(double potential, double max);
-    public abstract double computeDerivative(double sum, double potential, double max);
+
+    /**
+     * Computes outputs[offset + j] from potentials[j] for j in [0, length).
+     */
+    public abstract void computeOutputs(double[] potentials, double[] outputs, int offset, int length);
+
+    /**
+     * Multiplies terms[j] by the derivative of the output outputs[offset + j] with respect to its potential,
+     * for j in [0, length).
+     */
+    public abstract void multiplyByDerivative(double[] outputs, int offset, double[] terms, int length);
+
+    /**
+     * Computes outputs[offset + j] from potentials[j] for j in [0, length).
+     */
+    public abstract void computeOutputs(float[] potentials, float[] outputs, int offset, int length);
+
+    /**
+     * Multiplies terms[j] by the derivative of the output outputs[offset + j] with respect to its potential,
+     * for j in [0, length).
+     */
+    public abstract void multiplyByDerivative(float[] outputs, int offset, float[] terms, int length);
+
+    /**
+     * The parameters of the function, written into checkpoints together with its class, from which the function
+     * is created again by the constructor taking them as doubles.
+     */
+    public double[] getParameters() {
+        return new double[0];
+    }
 }
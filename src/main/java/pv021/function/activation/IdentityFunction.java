@@ -3,17 +3,22 @@ package pv021.function.activation;
 public class IdentityFunction extends ActivationFunction {
 
     @Override
-    public double computeOutput(double sum, double potential, double max) {
-        return apply(potential, max);
+    public void computeOutputs(double[] potentials, double[] outputs, int offset, int length) {
+        System.arraycopy(potentials, 0, outputs, offset, length);
     }
 
     @Override
-    public double apply(double potential, double max) {
-        return potential;
+    public void multiplyByDerivative(double[] outputs, int offset, double[] terms, int length) {
+        // the derivative is 1
     }
 
     @Override
-    public double computeDerivative(double sum, double potential, double max) {
-        return 0;
+    public void computeOutputs(float[] potentials, float[] outputs, int offset, int length) {
+        System.arraycopy(potentials, 0, outputs, offset, length);
+    }
+
+    @Override
+    public void multiplyByDerivative(float[] outputs, int offset, float[] terms, int length) {
+        // the derivative is 1
     }
 }
@@ -0,0 +1,53 @@
+package pv021.function.activation;
+
+/**
+ * max(potential, slope * potential) for a slope in (0, 1).
+ */
+public class LeakyReLuFunction extends ActivationFunction {
+    private final double slope;
+
+    public LeakyReLuFunction() {
+        this(0.01);
+    }
+
+    public LeakyReLuFunction(double slope) {
+        this.slope = slope;
+    }
+
+    @Override
+    public void computeOutputs(double[] potentials, double[] outputs, int offset, int length) {
+        for (int j = 0; j < length; j++) {
+            double potential = potentials[j];
+            outputs[offset + j] = potential > 0 ? potential : slope * potential;
+        }
+    }
+
+    @Override
+    public void multiplyByDerivative(double[] outputs, int offset, double[] terms, int length) {
+        for (int j = 0; j < length; j++) {
+            terms[j] = outputs[offset + j] > 0 ? terms[j] : slope * terms[j];
+        }
+    }
+
+    @Override
+    public void computeOutputs(float[] potentials, float[] outputs, int offset, int length) {
+        float slope = (float) this.slope;
+        for (int j = 0; j < length; j++) {
+            float potential = potentials[j];
+            outputs[offset + j] = potential > 0 ? potential : slope * potential;
+        }
+    }
+
+    @Override
+    public void multiplyByDerivative(float[] outputs, int offset, float[] terms, int length) {
+        float slope = (float) this.slope;
+        for (int j = 0; j < length; j++) {
+            terms[j] = outputs[offset + j] > 0 ? terms[j] : slope * terms[j];
+        }
+    }
+
+    @Override
+    public double[] getParameters() {
+        return new double[]{slope};
+    }
+}
@@ -1,18 +1,32 @@
 package pv021.function.activation;
 
 public class ReLuFunction extends ActivationFunction {
+
+    @Override
+    public void computeOutputs(double[] potentials, double[] outputs, int offset, int length) {
+        for (int j = 0; j < length; j++) {
+            outputs[offset + j] = Math.max(potentials[j], 0);
+        }
+    }
+
     @Override
-    public double computeOutput(double sum, double potential, double max) {
-        return apply(potential, max);
+    public void multiplyByDerivative(double[] outputs, int offset, double[] terms, int length) {
+        for (int j = 0; j < length; j++) {
+            terms[j] = outputs[offset + j] > 0 ? terms[j] : 0;
+        }
     }
 
     @Override
-    public double apply(double potential, double max) {
-        return potential > 0 ? potential : 0;
+    public void computeOutputs(float[] potentials, float[] outputs, int offset, int length) {
+        for (int j = 0; j < length; j++) {
+            outputs[offset + j] = Math.max(potentials[j], 0);
+        }
     }
 
     @Override
-    public double computeDerivative(double sum, double potential, double max) {
-        return potential > 0 ? 1 : 0;
+    public void multiplyByDerivative(float[] outputs, int offset, float[] terms, int length) {
+        for (int j = 0; j < length; j++) {
+            terms[j] = outputs[offset + j] > 0 ? terms[j] : 0;
+        }
     }
 }
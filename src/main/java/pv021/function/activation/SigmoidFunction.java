@@ -0,0 +1,34 @@
+package pv021.function.activation;
+
+public class SigmoidFunction extends ActivationFunction {
+
+    @Override
+    public void computeOutputs(double[] potentials, double[] outputs, int offset, int length) {
+        for (int j = 0; j < length; j++) {
+            outputs[offset + j] = 1 / (1 + Math.exp(-potentials[j]));
+        }
+    }
+
+    @Override
+    public void multiplyByDerivative(double[] outputs, int offset, double[] terms, int length) {
+        for (int j = 0; j < length; j++) {
+            double y = outputs[offset + j];
+            terms[j] *= y * (1 - y);
+        }
+    }
+
+    @Override
+    public void computeOutputs(float[] potentials, float[] outputs, int offset, int length) {
+        for (int j = 0; j < length; j++) {
+            outputs[offset + j] = (float) (1 / (1 + Math.exp(-potentials[j])));
+        }
+    }
+
+    @Override
+    public void multiplyByDerivative(float[] outputs, int offset, float[] terms, int length) {
+        for (int j = 0; j < length; j++) {
+            float y = outputs[offset + j];
+            terms[j] *= y * (1 - y);
+        }
+    }
+}
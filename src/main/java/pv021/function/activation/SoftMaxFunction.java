@@ -1,20 +1,66 @@
 package pv021.function.activation;
 
+/**
+ * The softmax, shifted by the maximal potential so that the exponentials cannot overflow.
+ * <p>
+ * The derivative is only the diagonal of the Jacobian, the network avoids it altogether by fusing
+ * the softmax output layer with the cross entropy.
+ */
 public class SoftMaxFunction extends ActivationFunction {
 
     @Override
-    public double computeOutput(double sum, double potential, double max) {
-        return apply(potential, max) / (sum + 1e-8);
+    public void computeOutputs(double[] potentials, double[] outputs, int offset, int length) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < length; j++) {
+            max = Math.max(max, potentials[j]);
+        }
+
+        double sum = 0;
+        for (int j = 0; j < length; j++) {
+            double exponential = Math.exp(potentials[j] - max);
+            outputs[offset + j] = exponential;
+            sum += exponential;
+        }
+
+        double scale = 1 / sum;  // the sum is at least 1, the maximal potential contributes exp(0)
+        for (int j = 0; j < length; j++) {
+            outputs[offset + j] *= scale;
+        }
     }
 
     @Override
-    public double apply(double potential, double max) {
-        return Math.pow(Math.E, potential - max);
+    public void multiplyByDerivative(double[] outputs, int offset, double[] terms, int length) {
+        for (int j = 0; j < length; j++) {
+            double y = outputs[offset + j];
+            terms[j] *= y * (1 - y);
+        }
+    }
+
+    @Override
+    public void computeOutputs(float[] potentials, float[] outputs, int offset, int length) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int j = 0; j < length; j++) {
+            max = Math.max(max, potentials[j]);
+        }
+
+        float sum = 0;
+        for (int j = 0; j < length; j++) {
+            float exponential = (float) Math.exp(potentials[j] - max);
+            outputs[offset + j] = exponential;
+            sum += exponential;
+        }
+
+        float scale = 1 / sum;
+        for (int j = 0; j < length; j++) {
+            outputs[offset + j] *= scale;
+        }
     }
 
     @Override
-    public double computeDerivative(double sum, double potential, double max) {
-        double x = computeOutput(sum, potential, max);
-        return x * (1 - x);
+    public void multiplyByDerivative(float[] outputs, int offset, float[] terms, int length) {
+        for (int j = 0; j < length; j++) {
+            float y = outputs[offset + j];
+            terms[j] *= y * (1 - y);
+        }
     }
 }
@@ -0,0 +1,314 @@
+package pv021.kernel;
+
+/**
+ * Hand-written, cache-blocked and register-tiled matrix-matrix products.
+ * <p>
+ * Matrices are given as arrays of rows. In the comments below A is m x k, B is k x n and C is m x n. Within
+ * a block of rows of B and columns of C, four rows of C are updated at once by the micro-kernel
+ * {@link Kernels#multiplyTile4}, which keeps a tile of C in registers across the whole block of rows of B,
+ * reading the four scalars of A per row of B from a packed panel. The rows of C left over when m is not
+ * a multiple of four are updated one at a time, with four rows of B at once. The float versions of the
+ * routines are used by the float precision modes.
+ */
+public final class Gemm {
+    private static final int BLOCK_K = 128;  // rows of B kept hot in L2 while a block of C is updated
+    private static final int BLOCK_N = 512;  // columns of C kept hot in L1
+    private static final int TILE_M = 4;  // rows of C per tile of the micro-kernel
+
+    private Gemm() {
+    }
+
+    /**
+     * C = A * B, i.e. c[x][y] = sum_t a[x][t] * b[t][y].
+     */
+    public static void multiply(Kernels kernels, double[][] a, double[][] b, double[][] c, int m, int n, int k) {
+        multiply(kernels, a, b, c, m, n, k, null);
+    }
+
+    /**
+     * Processes a completed row of C, e.g. by an activation function, while the row is still in the cache.
+     */
+    public interface RowEpilogue {
+        void apply(int row);
+    }
+
+    /**
+     * C = A * B followed by the epilogue of every row of C. If C fits into one block of columns, every row
+     * is complete after its update with the last block of rows of B, and the epilogue runs right then.
+     * Otherwise it runs after the product.
+     *
+     * @param epilogue null for none
+     */
+    public static void multiply(Kernels kernels, double[][] a, double[][] b, double[][] c, int m, int n, int k,
+                                RowEpilogue epilogue) {
+        for (int x = 0; x < m; x++) {
+            for (int y = 0; y < n; y++) {
+                c[x][y] = 0;
+            }
+        }
+
+        boolean fused = epilogue != null && n <= BLOCK_N;
+        double[] panel = new double[TILE_M * Math.min(k, BLOCK_K)];
+        for (int y0 = 0; y0 < n; y0 += BLOCK_N) {
+            int y1 = Math.min(n, y0 + BLOCK_N);
+            for (int t0 = 0; t0 < k; t0 += BLOCK_K) {
+                int t1 = Math.min(k, t0 + BLOCK_K);
+                int x = 0;
+                for (; x + TILE_M <= m; x += TILE_M) {
+                    if (packRows(a, x, t0, t1, panel)) {
+                        kernels.multiplyTile4(panel, b, t0, t1, c[x], c[x + 1], c[x + 2], c[x + 3], y0, y1);
+                    }
+                    if (fused && t1 == k) {
+                        for (int row = x; row < x + TILE_M; row++) {
+                            epilogue.apply(row);
+                        }
+                    }
+                }
+                for (; x < m; x++) {
+                    double[] ax = a[x];
+                    int t = t0;
+                    for (; t + 3 < t1; t += 4) {
+                        accumulate4(kernels, c[x], ax[t], b[t], ax[t + 1], b[t + 1], ax[t + 2], b[t + 2],
+                                ax[t + 3], b[t + 3], y0, y1);
+                    }
+                    for (; t < t1; t++) {
+                        accumulate1(kernels, c[x], ax[t], b[t], y0, y1);
+                    }
+                    if (fused && t1 == k) {
+                        epilogue.apply(x);
+                    }
+                }
+            }
+        }
+
+        if (epilogue != null && !fused) {
+            for (int x = 0; x < m; x++) {
+                epilogue.apply(x);
+            }
+        }
+    }
+
+    /**
+     * C += A^T * B, i.e. c[x][y] += sum_t a[t][x] * b[t][y], where A is k x m.
+     * <p>
+     * Used to accumulate weight gradients over a minibatch, t being the sample. The loop structure is
+     * the same as in {@link #multiply}, only the scalars are read down a column of A.
+     */
+    public static void multiplyTransposedAAdd(Kernels kernels, double[][] a, double[][] b, double[][] c,
+                                             int m, int n, int k) {
+        double[] panel = new double[TILE_M * Math.min(k, BLOCK_K)];
+        for (int y0 = 0; y0 < n; y0 += BLOCK_N) {
+            int y1 = Math.min(n, y0 + BLOCK_N);
+            for (int t0 = 0; t0 < k; t0 += BLOCK_K) {
+                int t1 = Math.min(k, t0 + BLOCK_K);
+                int x = 0;
+                for (; x + TILE_M <= m; x += TILE_M) {
+                    if (packColumns(a, x, t0, t1, panel)) {
+                        kernels.multiplyTile4(panel, b, t0, t1, c[x], c[x + 1], c[x + 2], c[x + 3], y0, y1);
+                    }
+                }
+                for (; x < m; x++) {
+                    int t = t0;
+                    for (; t + 3 < t1; t += 4) {
+                        accumulate4(kernels, c[x], a[t][x], b[t], a[t + 1][x], b[t + 1], a[t + 2][x], b[t + 2],
+                                a[t + 3][x], b[t + 3], y0, y1);
+                    }
+                    for (; t < t1; t++) {
+                        accumulate1(kernels, c[x], a[t][x], b[t], y0, y1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs a[x + r][t] for r in [0, 4) and t in [t0, t1) column by column into the panel.
+     *
+     * @return false if all the packed values are zero, e.g. after ReLU, so that the tile can be skipped
+     */
+    private static boolean packRows(double[][] a, int x, int t0, int t1, double[] panel) {
+        double[] a0 = a[x];
+        double[] a1 = a[x + 1];
+        double[] a2 = a[x + 2];
+        double[] a3 = a[x + 3];
+        boolean nonZero = false;
+        for (int t = t0, p = 0; t < t1; t++, p += TILE_M) {
+            panel[p] = a0[t];
+            panel[p + 1] = a1[t];
+            panel[p + 2] = a2[t];
+            panel[p + 3] = a3[t];
+            nonZero |= a0[t] != 0 || a1[t] != 0 || a2[t] != 0 || a3[t] != 0;
+        }
+        return nonZero;
+    }
+
+    /**
+     * Packs a[t][x + r] for r in [0, 4) and t in [t0, t1) row by row into the panel, laid out as in {@link #packRows}.
+     */
+    private static boolean packColumns(double[][] a, int x, int t0, int t1, double[] panel) {
+        boolean nonZero = false;
+        for (int t = t0, p = 0; t < t1; t++, p += TILE_M) {
+            double[] at = a[t];
+            panel[p] = at[x];
+            panel[p + 1] = at[x + 1];
+            panel[p + 2] = at[x + 2];
+            panel[p + 3] = at[x + 3];
+            nonZero |= at[x] != 0 || at[x + 1] != 0 || at[x + 2] != 0 || at[x + 3] != 0;
+        }
+        return nonZero;
+    }
+
+    /**
+     * c[y] += s0 * b0[y] + s1 * b1[y] + s2 * b2[y] + s3 * b3[y] for y in [from, to).
+     */
+    private static void accumulate4(Kernels kernels, double[] c, double s0, double[] b0, double s1, double[] b1,
+                                    double s2, double[] b2, double s3, double[] b3, int from, int to) {
+        if (s0 == 0 && s1 == 0 && s2 == 0 && s3 == 0) {
+            return;  // common after ReLU, whose output and derivative are zero for many neurons
+        }
+        kernels.axpy4(s0, b0, s1, b1, s2, b2, s3, b3, c, from, to);
+    }
+
+    private static void accumulate1(Kernels kernels, double[] c, double s, double[] b, int from, int to) {
+        if (s == 0) {
+            return;
+        }
+        kernels.axpy(s, b, c, from, to);
+    }
+
+    /**
+     * C = A * B, see {@link #multiply(Kernels, double[][], double[][], double[][], int, int, int)}.
+     */
+    public static void multiply(Kernels kernels, float[][] a, float[][] b, float[][] c, int m, int n, int k) {
+        multiply(kernels, a, b, c, m, n, k, null);
+    }
+
+    /**
+     * C = A * B followed by the epilogue of every row of C,
+     * see {@link #multiply(Kernels, double[][], double[][], double[][], int, int, int, RowEpilogue)}.
+     *
+     * @param epilogue null for none
+     */
+    public static void multiply(Kernels kernels, float[][] a, float[][] b, float[][] c, int m, int n, int k,
+                                RowEpilogue epilogue) {
+        for (int x = 0; x < m; x++) {
+            for (int y = 0; y < n; y++) {
+                c[x][y] = 0;
+            }
+        }
+
+        boolean fused = epilogue != null && n <= BLOCK_N;
+        float[] panel = new float[TILE_M * Math.min(k, BLOCK_K)];
+        for (int y0 = 0; y0 < n; y0 += BLOCK_N) {
+            int y1 = Math.min(n, y0 + BLOCK_N);
+            for (int t0 = 0; t0 < k; t0 += BLOCK_K) {
+                int t1 = Math.min(k, t0 + BLOCK_K);
+                int x = 0;
+                for (; x + TILE_M <= m; x += TILE_M) {
+                    if (packRows(a, x, t0, t1, panel)) {
+                        kernels.multiplyTile4(panel, b, t0, t1, c[x], c[x + 1], c[x + 2], c[x + 3], y0, y1);
+                    }
+                    if (fused && t1 == k) {
+                        for (int row = x; row < x + TILE_M; row++) {
+                            epilogue.apply(row);
+                        }
+                    }
+                }
+                for (; x < m; x++) {
+                    float[] ax = a[x];
+                    int t = t0;
+                    for (; t + 3 < t1; t += 4) {
+                        accumulate4(kernels, c[x], ax[t], b[t], ax[t + 1], b[t + 1], ax[t + 2], b[t + 2],
+                                ax[t + 3], b[t + 3], y0, y1);
+                    }
+                    for (; t < t1; t++) {
+                        accumulate1(kernels, c[x], ax[t], b[t], y0, y1);
+                    }
+                    if (fused && t1 == k) {
+                        epilogue.apply(x);
+                    }
+                }
+            }
+        }
+
+        if (epilogue != null && !fused) {
+            for (int x = 0; x < m; x++) {
+                epilogue.apply(x);
+            }
+        }
+    }
+
+    /**
+     * C += A^T * B, see {@link #multiplyTransposedAAdd(Kernels, double[][], double[][], double[][], int, int, int)}.
+     */
+    public static void multiplyTransposedAAdd(Kernels kernels, float[][] a, float[][] b, float[][] c,
+                                             int m, int n, int k) {
+        float[] panel = new float[TILE_M * Math.min(k, BLOCK_K)];
+        for (int y0 = 0; y0 < n; y0 += BLOCK_N) {
+            int y1 = Math.min(n, y0 + BLOCK_N);
+            for (int t0 = 0; t0 < k; t0 += BLOCK_K) {
+                int t1 = Math.min(k, t0 + BLOCK_K);
+                int x = 0;
+                for (; x + TILE_M <= m; x += TILE_M) {
+                    if (packColumns(a, x, t0, t1, panel)) {
+                        kernels.multiplyTile4(panel, b, t0, t1, c[x], c[x + 1], c[x + 2], c[x + 3], y0, y1);
+                    }
+                }
+                for (; x < m; x++) {
+                    int t = t0;
+                    for (; t + 3 < t1; t += 4) {
+                        accumulate4(kernels, c[x], a[t][x], b[t], a[t + 1][x], b[t + 1], a[t + 2][x], b[t + 2],
+                                a[t + 3][x], b[t + 3], y0, y1);
+                    }
+                    for (; t < t1; t++) {
+                        accumulate1(kernels, c[x], a[t][x], b[t], y0, y1);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean packRows(float[][] a, int x, int t0, int t1, float[] panel) {
+        float[] a0 = a[x];
+        float[] a1 = a[x + 1];
+        float[] a2 = a[x + 2];
+        float[] a3 = a[x + 3];
+        boolean nonZero = false;
+        for (int t = t0, p = 0; t < t1; t++, p += TILE_M) {
+            panel[p] = a0[t];
+            panel[p + 1] = a1[t];
+            panel[p + 2] = a2[t];
+            panel[p + 3] = a3[t];
+            nonZero |= a0[t] != 0 || a1[t] != 0 || a2[t] != 0 || a3[t] != 0;
+        }
+        return nonZero;
+    }
+
+    private static boolean packColumns(float[][] a, int x, int t0, int t1, float[] panel) {
+        boolean nonZero = false;
+        for (int t = t0, p = 0; t < t1; t++, p += TILE_M) {
+            float[] at = a[t];
+            panel[p] = at[x];
+            panel[p + 1] = at[x + 1];
+            panel[p + 2] = at[x + 2];
+            panel[p + 3] = at[x + 3];
+            nonZero |= at[x] != 0 || at[x + 1] != 0 || at[x + 2] != 0 || at[x + 3] != 0;
+        }
+        return nonZero;
+    }
+
+    private static void accumulate4(Kernels kernels, float[] c, float s0, float[] b0, float s1, float[] b1,
+                                    float s2, float[] b2, float s3, float[] b3, int from, int to) {
+        if (s0 == 0 && s1 == 0 && s2 == 0 && s3 == 0) {
+            return;
+        }
+        kernels.axpy4(s0, b0, s1, b1, s2, b2, s3, b3, c, from, to);
+    }
+
+    private static void accumulate1(Kernels kernels, float[] c, float s, float[] b, int from, int to) {
+        if (s == 0) {
+            return;
+        }
+        kernels.axpy(s, b, c, from, to);
+    }
+}
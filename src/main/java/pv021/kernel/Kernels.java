@@ -0,0 +1,96 @@
+package pv021.kernel;
+
+/**
+ * The innermost loops of training, shared by the per-sample and the batched execution modes.
+ * <p>
+ * Row arguments are indexed from 0, while the parameter buffers and the state of the optimizer updates are flat
+ * and addressed through an offset, see {@link pv021.optimizer.Optimizer#update}.
+ */
+public abstract class Kernels {
+    private static final String VECTOR_KERNELS = "pv021.kernel.VectorKernels";
+
+    /**
+     * Creates the kernels backed by the JDK Vector API if requested and if the jdk.incubator.vector module
+     * is present at runtime, otherwise the scalar kernels.
+     */
+    public static Kernels create(boolean vector) {
+        if (vector) {
+            try {
+                return (Kernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.out.println("Vector API is not available (run with --add-modules jdk.incubator.vector), "
+                        + "using scalar kernels");
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * y[i] += a * x[i] for i in [from, to).
+     */
+    public abstract void axpy(double a, double[] x, double[] y, int from, int to);
+
+    /**
+     * y[i] += a0 * x0[i] + a1 * x1[i] + a2 * x2[i] + a3 * x3[i] for i in [from, to).
+     */
+    public abstract void axpy4(double a0, double[] x0, double a1, double[] x1, double a2, double[] x2,
+                               double a3, double[] x3, double[] y, int from, int to);
+
+    /**
+     * c_r[i] += sum_t panel[4 * (t - t0) + r] * b[t][i] for the rows r = 0, ..., 3 of a tile of C,
+     * t in [t0, t1) and i in [from, to), the micro-kernel of {@link Gemm}. The panel holds four rows
+     * of A packed column by column. Implementations keep the tile of C in registers across t where it pays off.
+     */
+    public abstract void multiplyTile4(double[] panel, double[][] b, int t0, int t1,
+                                       double[] c0, double[] c1, double[] c2, double[] c3, int from, int to);
+
+    /**
+     * y[i] += x[i] and x[i] = 0 for i in [0, length).
+     */
+    public abstract void addAndClear(double[] x, double[] y, int length);
+
+    /**
+     * y[i] += a * x[i] for i in [from, to).
+     */
+    public abstract void axpy(float a, float[] x, float[] y, int from, int to);
+
+    /**
+     * y[i] += a0 * x0[i] + a1 * x1[i] + a2 * x2[i] + a3 * x3[i] for i in [from, to).
+     */
+    public abstract void axpy4(float a0, float[] x0, float a1, float[] x1, float a2, float[] x2,
+                               float a3, float[] x3, float[] y, int from, int to);
+
+    /**
+     * The micro-kernel of {@link Gemm}, see {@link #multiplyTile4(double[], double[][], int, int, double[],
+     * double[], double[], double[], int, int)}.
+     */
+    public abstract void multiplyTile4(float[] panel, float[][] b, int t0, int t1,
+                                       float[] c0, float[] c1, float[] c2, float[] c3, int from, int to);
+
+    /**
+     * y[i] += x[i] and x[i] = 0 for i in [0, length).
+     */
+    public abstract void addAndClear(float[] x, float[] y, int length);
+
+    /**
+     * The update of {@link pv021.optimizer.MomentumRmsProp} of the parameters at [offset, offset + length),
+     * gradients[i] being the gradient of the parameter at offset + i. The gradients are cleared.
+     */
+    public abstract void momentumRmsPropUpdate(double[] weights, double[] momentum, double[] rmsprop, int offset,
+                                               double[] gradients, int length, double learningRate,
+                                               double momentumAlpha, double rmsAlpha, double delta);
+
+    /**
+     * The update of {@link pv021.optimizer.RmsProp}, see {@link #momentumRmsPropUpdate}.
+     */
+    public abstract void rmsPropUpdate(double[] weights, double[] rmsprop, int offset, double[] gradients,
+                                       int length, double learningRate, double rmsAlpha, double delta);
+
+    /**
+     * The update of {@link pv021.optimizer.Adam}, see {@link #momentumRmsPropUpdate}, stepSize and correction
+     * including the bias corrections of the step and decay being the learning rate times the weight decay.
+     */
+    public abstract void adamUpdate(double[] weights, double[] firstMoment, double[] secondMoment, int offset,
+                                    double[] gradients, int length, double beta1, double beta2, double stepSize,
+                                    double correction, double epsilon, double decay);
+}
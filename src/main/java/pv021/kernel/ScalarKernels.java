@@ -0,0 +1,145 @@
+package pv021.kernel;
+
+/**
+ * Plain Java kernels, left to the auto-vectorization of the JIT.
+ */
+public class ScalarKernels extends Kernels {
+
+    @Override
+    public void axpy(double a, double[] x, double[] y, int from, int to) {
+        for (int i = from; i < to; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+    @Override
+    public void axpy4(double a0, double[] x0, double a1, double[] x1, double a2, double[] x2,
+                      double a3, double[] x3, double[] y, int from, int to) {
+        for (int i = from; i < to; i++) {
+            y[i] += a0 * x0[i] + a1 * x1[i] + a2 * x2[i] + a3 * x3[i];
+        }
+    }
+
+    @Override
+    public void multiplyTile4(double[] panel, double[][] b, int t0, int t1,
+                              double[] c0, double[] c1, double[] c2, double[] c3, int from, int to) {
+        // a tile of scalar locals is not vectorized by the JIT and is more than twice as slow as updating
+        // the four rows of C in place, row of B by row of B, which only keeps the scalars of A in registers
+        for (int t = t0, p = 0; t < t1; t++, p += 4) {
+            double[] bt = b[t];
+            double a0 = panel[p];
+            double a1 = panel[p + 1];
+            double a2 = panel[p + 2];
+            double a3 = panel[p + 3];
+            for (int i = from; i < to; i++) {
+                double bi = bt[i];
+                c0[i] += a0 * bi;
+                c1[i] += a1 * bi;
+                c2[i] += a2 * bi;
+                c3[i] += a3 * bi;
+            }
+        }
+    }
+
+    @Override
+    public void addAndClear(double[] x, double[] y, int length) {
+        for (int i = 0; i < length; i++) {
+            y[i] += x[i];
+            x[i] = 0;
+        }
+    }
+
+    @Override
+    public void axpy(float a, float[] x, float[] y, int from, int to) {
+        for (int i = from; i < to; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+    @Override
+    public void axpy4(float a0, float[] x0, float a1, float[] x1, float a2, float[] x2,
+                      float a3, float[] x3, float[] y, int from, int to) {
+        for (int i = from; i < to; i++) {
+            y[i] += a0 * x0[i] + a1 * x1[i] + a2 * x2[i] + a3 * x3[i];
+        }
+    }
+
+    @Override
+    public void multiplyTile4(float[] panel, float[][] b, int t0, int t1,
+                              float[] c0, float[] c1, float[] c2, float[] c3, int from, int to) {
+        for (int t = t0, p = 0; t < t1; t++, p += 4) {
+            float[] bt = b[t];
+            float a0 = panel[p];
+            float a1 = panel[p + 1];
+            float a2 = panel[p + 2];
+            float a3 = panel[p + 3];
+            for (int i = from; i < to; i++) {
+                float bi = bt[i];
+                c0[i] += a0 * bi;
+                c1[i] += a1 * bi;
+                c2[i] += a2 * bi;
+                c3[i] += a3 * bi;
+            }
+        }
+    }
+
+    @Override
+    public void addAndClear(float[] x, float[] y, int length) {
+        for (int i = 0; i < length; i++) {
+            y[i] += x[i];
+            x[i] = 0;
+        }
+    }
+
+    @Override
+    public void momentumRmsPropUpdate(double[] weights, double[] momentum, double[] rmsprop, int offset,
+                                      double[] gradients, int length, double learningRate,
+                                      double momentumAlpha, double rmsAlpha, double delta) {
+        for (int i = 0; i < length; i++) {
+            int index = offset + i;
+            double step = gradients[i];
+
+            // r_ji^(t) from r_ji^(t - 1)
+            double currentRmsProp = rmsAlpha * rmsprop[index] + (1 - rmsAlpha) * step * step;
+
+            double actualStep = -(learningRate / Math.sqrt(currentRmsProp + delta)) * step;
+            double momentumBalancedStep = actualStep * (1 - momentumAlpha) + momentumAlpha * momentum[index];
+
+            weights[index] += momentumBalancedStep;
+            rmsprop[index] = currentRmsProp;
+            momentum[index] = momentumBalancedStep;
+            gradients[i] = 0;
+        }
+    }
+
+    @Override
+    public void rmsPropUpdate(double[] weights, double[] rmsprop, int offset, double[] gradients,
+                              int length, double learningRate, double rmsAlpha, double delta) {
+        for (int i = 0; i < length; i++) {
+            int index = offset + i;
+            double step = gradients[i];
+            double currentRmsProp = rmsAlpha * rmsprop[index] + (1 - rmsAlpha) * step * step;
+
+            weights[index] -= learningRate / Math.sqrt(currentRmsProp + delta) * step;
+            rmsprop[index] = currentRmsProp;
+            gradients[i] = 0;
+        }
+    }
+
+    @Override
+    public void adamUpdate(double[] weights, double[] firstMoment, double[] secondMoment, int offset,
+                           double[] gradients, int length, double beta1, double beta2, double stepSize,
+                           double correction, double epsilon, double decay) {
+        for (int i = 0; i < length; i++) {
+            int index = offset + i;
+            double gradient = gradients[i];
+            double first = beta1 * firstMoment[index] + (1 - beta1) * gradient;
+            double second = beta2 * secondMoment[index] + (1 - beta2) * gradient * gradient;
+
+            weights[index] -= stepSize * first / (Math.sqrt(second) / correction + epsilon) + decay * weights[index];
+            firstMoment[index] = first;
+            secondMoment[index] = second;
+            gradients[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package pv021.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels written with explicit SIMD lanes of the JDK Vector API (jdk.incubator.vector).
+ * <p>
+ * The class is loaded only through {@link Kernels#create(boolean)}, so that a JVM started without
+ * the incubator module falls back to {@link ScalarKernels} instead of failing.
+ */
+public class VectorKernels extends Kernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void axpy(double a, double[] x, double[] y, int from, int to) {
+        DoubleVector va = DoubleVector.broadcast(SPECIES, a);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, i);
+            vx.fma(va, vy).intoArray(y, i);
+        }
+        for (; i < to; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+    @Override
+    public void axpy4(double a0, double[] x0, double a1, double[] x1, double a2, double[] x2,
+                      double a3, double[] x3, double[] y, int from, int to) {
+        DoubleVector va0 = DoubleVector.broadcast(SPECIES, a0);
+        DoubleVector va1 = DoubleVector.broadcast(SPECIES, a1);
+        DoubleVector va2 = DoubleVector.broadcast(SPECIES, a2);
+        DoubleVector va3 = DoubleVector.broadcast(SPECIES, a3);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector sum = DoubleVector.fromArray(SPECIES, y, i);
+            sum = DoubleVector.fromArray(SPECIES, x0, i).fma(va0, sum);
+            sum = DoubleVector.fromArray(SPECIES, x1, i).fma(va1, sum);
+            sum = DoubleVector.fromArray(SPECIES, x2, i).fma(va2, sum);
+            sum = DoubleVector.fromArray(SPECIES, x3, i).fma(va3, sum);
+            sum.intoArray(y, i);
+        }
+        for (; i < to; i++) {
+            y[i] += a0 * x0[i] + a1 * x1[i] + a2 * x2[i] + a3 * x3[i];
+        }
+    }
+
+    @Override
+    public void multiplyTile4(double[] panel, double[][] b, int t0, int t1,
+                              double[] c0, double[] c1, double[] c2, double[] c3, int from, int to) {
+        int lanes = SPECIES.length();
+        int i = from;
+        for (; i + 2 * lanes <= to; i += 2 * lanes) {  // 4 x 2 vectors
+            int j = i + lanes;
+            DoubleVector c00 = DoubleVector.fromArray(SPECIES, c0, i);
+            DoubleVector c01 = DoubleVector.fromArray(SPECIES, c0, j);
+            DoubleVector c10 = DoubleVector.fromArray(SPECIES, c1, i);
+            DoubleVector c11 = DoubleVector.fromArray(SPECIES, c1, j);
+            DoubleVector c20 = DoubleVector.fromArray(SPECIES, c2, i);
+            DoubleVector c21 = DoubleVector.fromArray(SPECIES, c2, j);
+            DoubleVector c30 = DoubleVector.fromArray(SPECIES, c3, i);
+            DoubleVector c31 = DoubleVector.fromArray(SPECIES, c3, j);
+            for (int t = t0, p = 0; t < t1; t++, p += 4) {
+                DoubleVector b0 = DoubleVector.fromArray(SPECIES, b[t], i);
+                DoubleVector b1 = DoubleVector.fromArray(SPECIES, b[t], j);
+                DoubleVector a = DoubleVector.broadcast(SPECIES, panel[p]);
+                c00 = b0.fma(a, c00);
+                c01 = b1.fma(a, c01);
+                a = DoubleVector.broadcast(SPECIES, panel[p + 1]);
+                c10 = b0.fma(a, c10);
+                c11 = b1.fma(a, c11);
+                a = DoubleVector.broadcast(SPECIES, panel[p + 2]);
+                c20 = b0.fma(a, c20);
+                c21 = b1.fma(a, c21);
+                a = DoubleVector.broadcast(SPECIES, panel[p + 3]);
+                c30 = b0.fma(a, c30);
+                c31 = b1.fma(a, c31);
+            }
+            c00.intoArray(c0, i);
+            c01.intoArray(c0, j);
+            c10.intoArray(c1, i);
+            c11.intoArray(c1, j);
+            c20.intoArray(c2, i);
+            c21.intoArray(c2, j);
+            c30.intoArray(c3, i);
+            c31.intoArray(c3, j);
+        }
+        for (; i + lanes <= to; i += lanes) {  // 4 x 1 vector
+            DoubleVector c00 = DoubleVector.fromArray(SPECIES, c0, i);
+            DoubleVector c10 = DoubleVector.fromArray(SPECIES, c1, i);
+            DoubleVector c20 = DoubleVector.fromArray(SPECIES, c2, i);
+            DoubleVector c30 = DoubleVector.fromArray(SPECIES, c3, i);
+            for (int t = t0, p = 0; t < t1; t++, p += 4) {
+                DoubleVector b0 = DoubleVector.fromArray(SPECIES, b[t], i);
+                c00 = b0.fma(DoubleVector.broadcast(SPECIES, panel[p]), c00);
+                c10 = b0.fma(DoubleVector.broadcast(SPECIES, panel[p + 1]), c10);
+                c20 = b0.fma(DoubleVector.broadcast(SPECIES, panel[p + 2]), c20);
+                c30 = b0.fma(DoubleVector.broadcast(SPECIES, panel[p + 3]), c30);
+            }
+            c00.intoArray(c0, i);
+            c10.intoArray(c1, i);
+            c20.intoArray(c2, i);
+            c30.intoArray(c3, i);
+        }
+        for (; i < to; i++) {  // 4 x 1 edge
+            double s0 = c0[i], s1 = c1[i], s2 = c2[i], s3 = c3[i];
+            for (int t = t0, p = 0; t < t1; t++, p += 4) {
+                double bt = b[t][i];
+                s0 += panel[p] * bt;
+                s1 += panel[p + 1] * bt;
+                s2 += panel[p + 2] * bt;
+                s3 += panel[p + 3] * bt;
+            }
+            c0[i] = s0;
+            c1[i] = s1;
+            c2[i] = s2;
+            c3[i] = s3;
+        }
+    }
+
+    @Override
+    public void addAndClear(double[] x, double[] y, int length) {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector.fromArray(SPECIES, y, i).add(vx).intoArray(y, i);
+            zero.intoArray(x, i);
+        }
+        for (; i < length; i++) {
+            y[i] += x[i];
+            x[i] = 0;
+        }
+    }
+
+    @Override
+    public void axpy(float a, float[] x, float[] y, int from, int to) {
+        FloatVector va = FloatVector.broadcast(FLOAT_SPECIES, a);
+        int i = from;
+        for (int bound = from + FLOAT_SPECIES.loopBound(to - from); i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector vx = FloatVector.fromArray(FLOAT_SPECIES, x, i);
+            FloatVector vy = FloatVector.fromArray(FLOAT_SPECIES, y, i);
+            vx.fma(va, vy).intoArray(y, i);
+        }
+        for (; i < to; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+    @Override
+    public void axpy4(float a0, float[] x0, float a1, float[] x1, float a2, float[] x2,
+                      float a3, float[] x3, float[] y, int from, int to) {
+        FloatVector va0 = FloatVector.broadcast(FLOAT_SPECIES, a0);
+        FloatVector va1 = FloatVector.broadcast(FLOAT_SPECIES, a1);
+        FloatVector va2 = FloatVector.broadcast(FLOAT_SPECIES, a2);
+        FloatVector va3 = FloatVector.broadcast(FLOAT_SPECIES, a3);
+        int i = from;
+        for (int bound = from + FLOAT_SPECIES.loopBound(to - from); i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector sum = FloatVector.fromArray(FLOAT_SPECIES, y, i);
+            sum = FloatVector.fromArray(FLOAT_SPECIES, x0, i).fma(va0, sum);
+            sum = FloatVector.fromArray(FLOAT_SPECIES, x1, i).fma(va1, sum);
+            sum = FloatVector.fromArray(FLOAT_SPECIES, x2, i).fma(va2, sum);
+            sum = FloatVector.fromArray(FLOAT_SPECIES, x3, i).fma(va3, sum);
+            sum.intoArray(y, i);
+        }
+        for (; i < to; i++) {
+            y[i] += a0 * x0[i] + a1 * x1[i] + a2 * x2[i] + a3 * x3[i];
+        }
+    }
+
+    @Override
+    public void multiplyTile4(float[] panel, float[][] b, int t0, int t1,
+                              float[] c0, float[] c1, float[] c2, float[] c3, int from, int to) {
+        int lanes = FLOAT_SPECIES.length();
+        int i = from;
+        for (; i + 2 * lanes <= to; i += 2 * lanes) {  // 4 x 2 vectors
+            int j = i + lanes;
+            FloatVector c00 = FloatVector.fromArray(FLOAT_SPECIES, c0, i);
+            FloatVector c01 = FloatVector.fromArray(FLOAT_SPECIES, c0, j);
+            FloatVector c10 = FloatVector.fromArray(FLOAT_SPECIES, c1, i);
+            FloatVector c11 = FloatVector.fromArray(FLOAT_SPECIES, c1, j);
+            FloatVector c20 = FloatVector.fromArray(FLOAT_SPECIES, c2, i);
+            FloatVector c21 = FloatVector.fromArray(FLOAT_SPECIES, c2, j);
+            FloatVector c30 = FloatVector.fromArray(FLOAT_SPECIES, c3, i);
+            FloatVector c31 = FloatVector.fromArray(FLOAT_SPECIES, c3, j);
+            for (int t = t0, p = 0; t < t1; t++, p += 4) {
+                FloatVector b0 = FloatVector.fromArray(FLOAT_SPECIES, b[t], i);
+                FloatVector b1 = FloatVector.fromArray(FLOAT_SPECIES, b[t], j);
+                FloatVector a = FloatVector.broadcast(FLOAT_SPECIES, panel[p]);
+                c00 = b0.fma(a, c00);
+                c01 = b1.fma(a, c01);
+                a = FloatVector.broadcast(FLOAT_SPECIES, panel[p + 1]);
+                c10 = b0.fma(a, c10);
+                c11 = b1.fma(a, c11);
+                a = FloatVector.broadcast(FLOAT_SPECIES, panel[p + 2]);
+                c20 = b0.fma(a, c20);
+                c21 = b1.fma(a, c21);
+                a = FloatVector.broadcast(FLOAT_SPECIES, panel[p + 3]);
+                c30 = b0.fma(a, c30);
+                c31 = b1.fma(a, c31);
+            }
+            c00.intoArray(c0, i);
+            c01.intoArray(c0, j);
+            c10.intoArray(c1, i);
+            c11.intoArray(c1, j);
+            c20.intoArray(c2, i);
+            c21.intoArray(c2, j);
+            c30.intoArray(c3, i);
+            c31.intoArray(c3, j);
+        }
+        for (; i + lanes <= to; i += lanes) {  // 4 x 1 vector
+            FloatVector c00 = FloatVector.fromArray(FLOAT_SPECIES, c0, i);
+            FloatVector c10 = FloatVector.fromArray(FLOAT_SPECIES, c1, i);
+            FloatVector c20 = FloatVector.fromArray(FLOAT_SPECIES, c2, i);
+            FloatVector c30 = FloatVector.fromArray(FLOAT_SPECIES, c3, i);
+            for (int t = t0, p = 0; t < t1; t++, p += 4) {
+                FloatVector b0 = FloatVector.fromArray(FLOAT_SPECIES, b[t], i);
+                c00 = b0.fma(FloatVector.broadcast(FLOAT_SPECIES, panel[p]), c00);
+                c10 = b0.fma(FloatVector.broadcast(FLOAT_SPECIES, panel[p + 1]), c10);
+                c20 = b0.fma(FloatVector.broadcast(FLOAT_SPECIES, panel[p + 2]), c20);
+                c30 = b0.fma(FloatVector.broadcast(FLOAT_SPECIES, panel[p + 3]), c30);
+            }
+            c00.intoArray(c0, i);
+            c10.intoArray(c1, i);
+            c20.intoArray(c2, i);
+            c30.intoArray(c3, i);
+        }
+        for (; i < to; i++) {  // 4 x 1 edge
+            float s0 = c0[i], s1 = c1[i], s2 = c2[i], s3 = c3[i];
+            for (int t = t0, p = 0; t < t1; t++, p += 4) {
+                float bt = b[t][i];
+                s0 += panel[p] * bt;
+                s1 += panel[p + 1] * bt;
+                s2 += panel[p + 2] * bt;
+                s3 += panel[p + 3] * bt;
+            }
+            c0[i] = s0;
+            c1[i] = s1;
+            c2[i] = s2;
+            c3[i] = s3;
+        }
+    }
+
+    @Override
+    public void addAndClear(float[] x, float[] y, int length) {
+        FloatVector zero = FloatVector.zero(FLOAT_SPECIES);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector vx = FloatVector.fromArray(FLOAT_SPECIES, x, i);
+            FloatVector.fromArray(FLOAT_SPECIES, y, i).add(vx).intoArray(y, i);
+            zero.intoArray(x, i);
+        }
+        for (; i < length; i++) {
+            y[i] += x[i];
+            x[i] = 0;
+        }
+    }
+
+    // The updates use no fused multiply-adds, so that they give the same results as the scalar kernels.
+
+    @Override
+    public void momentumRmsPropUpdate(double[] weights, double[] momentum, double[] rmsprop, int offset,
+                                      double[] gradients, int length, double learningRate,
+                                      double momentumAlpha, double rmsAlpha, double delta) {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector rate = DoubleVector.broadcast(SPECIES, learningRate);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            int index = offset + i;
+            DoubleVector step = DoubleVector.fromArray(SPECIES, gradients, i);
+            DoubleVector currentRmsProp = DoubleVector.fromArray(SPECIES, rmsprop, index).mul(rmsAlpha)
+                    .add(step.mul(1 - rmsAlpha).mul(step));
+            DoubleVector actualStep = rate.div(currentRmsProp.add(delta).sqrt()).neg().mul(step);
+            DoubleVector momentumBalancedStep = actualStep.mul(1 - momentumAlpha)
+                    .add(DoubleVector.fromArray(SPECIES, momentum, index).mul(momentumAlpha));
+
+            DoubleVector.fromArray(SPECIES, weights, index).add(momentumBalancedStep).intoArray(weights, index);
+            currentRmsProp.intoArray(rmsprop, index);
+            momentumBalancedStep.intoArray(momentum, index);
+            zero.intoArray(gradients, i);
+        }
+        for (; i < length; i++) {
+            int index = offset + i;
+            double step = gradients[i];
+            double currentRmsProp = rmsAlpha * rmsprop[index] + (1 - rmsAlpha) * step * step;
+            double actualStep = -(learningRate / Math.sqrt(currentRmsProp + delta)) * step;
+            double momentumBalancedStep = actualStep * (1 - momentumAlpha) + momentumAlpha * momentum[index];
+
+            weights[index] += momentumBalancedStep;
+            rmsprop[index] = currentRmsProp;
+            momentum[index] = momentumBalancedStep;
+            gradients[i] = 0;
+        }
+    }
+
+    @Override
+    public void rmsPropUpdate(double[] weights, double[] rmsprop, int offset, double[] gradients,
+                              int length, double learningRate, double rmsAlpha, double delta) {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector rate = DoubleVector.broadcast(SPECIES, learningRate);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            int index = offset + i;
+            DoubleVector step = DoubleVector.fromArray(SPECIES, gradients, i);
+            DoubleVector currentRmsProp = DoubleVector.fromArray(SPECIES, rmsprop, index).mul(rmsAlpha)
+                    .add(step.mul(1 - rmsAlpha).mul(step));
+
+            DoubleVector.fromArray(SPECIES, weights, index)
+                    .sub(rate.div(currentRmsProp.add(delta).sqrt()).mul(step)).intoArray(weights, index);
+            currentRmsProp.intoArray(rmsprop, index);
+            zero.intoArray(gradients, i);
+        }
+        for (; i < length; i++) {
+            int index = offset + i;
+            double step = gradients[i];
+            double currentRmsProp = rmsAlpha * rmsprop[index] + (1 - rmsAlpha) * step * step;
+
+            weights[index] -= learningRate / Math.sqrt(currentRmsProp + delta) * step;
+            rmsprop[index] = currentRmsProp;
+            gradients[i] = 0;
+        }
+    }
+
+    @Override
+    public void adamUpdate(double[] weights, double[] firstMoment, double[] secondMoment, int offset,
+                           double[] gradients, int length, double beta1, double beta2, double stepSize,
+                           double correction, double epsilon, double decay) {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            int index = offset + i;
+            DoubleVector gradient = DoubleVector.fromArray(SPECIES, gradients, i);
+            DoubleVector first = DoubleVector.fromArray(SPECIES, firstMoment, index).mul(beta1)
+                    .add(gradient.mul(1 - beta1));
+            DoubleVector second = DoubleVector.fromArray(SPECIES, secondMoment, index).mul(beta2)
+                    .add(gradient.mul(1 - beta2).mul(gradient));
+            DoubleVector w = DoubleVector.fromArray(SPECIES, weights, index);
+
+            w.sub(first.mul(stepSize).div(second.sqrt().div(correction).add(epsilon)).add(w.mul(decay)))
+                    .intoArray(weights, index);
+            first.intoArray(firstMoment, index);
+            second.intoArray(secondMoment, index);
+            zero.intoArray(gradients, i);
+        }
+        for (; i < length; i++) {
+            int index = offset + i;
+            double gradient = gradients[i];
+            double first = beta1 * firstMoment[index] + (1 - beta1) * gradient;
+            double second = beta2 * secondMoment[index] + (1 - beta2) * gradient * gradient;
+
+            weights[index] -= stepSize * first / (Math.sqrt(second) / correction + epsilon) + decay * weights[index];
+            firstMoment[index] = first;
+            secondMoment[index] = second;
+            gradients[i] = 0;
+        }
+    }
+}
@@ -1,33 +1,101 @@
 package pv021.main;
 
+import pv021.data.Augmentation;
 import pv021.data.Data;
+import pv021.distributed.ProcessGroup;
 import pv021.function.activation.ReLuFunction;
 import pv021.function.activation.SoftMaxFunction;
+import pv021.metrics.CsvMetricsWriter;
+import pv021.network.Checkpoint;
 import pv021.network.NeuralNetwork;
+import pv021.network.PredictionPipeline;
 import pv021.network.builder.NeuralNetworkBuilder;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
 public class Main {
+    private static final String DATA = "data/fashion_mnist";
+    private static final int THREADS = 16;
+    private static final int PREDICTION_CHUNK_ROWS = 4096;
+    private static final Path CHECKPOINT = Path.of("network.checkpoint");
+    private static final Path METRICS = Path.of("metrics.csv");
+    private static final int BASE_PORT = 5021;
+
+    /**
+     * Options: --vector for the Vector API kernels, --checkpoint to save checkpoints during the training,
+     * --resume to continue from the last checkpoint, --inference to only evaluate the last checkpoint,
+     * --metrics to write the metrics of every step into metrics.csv, --early-stopping to hold out a tenth of the
+     * training vectors for a validation and stop once it does not improve, --processes n --rank r to train
+     * as the r-th of n processes on this host listening on ports from 5021 on, only the first of which writes
+     * the checkpoints, the metrics and the predictions, --prefetch to assemble the minibatches in the background,
+     * --augment to also shift the images by up to 2 pixels and flip them horizontally.
+     */
     public static void main(String[] args) throws Exception {
+        List<String> options = Arrays.asList(args);
+        int processes = options.contains("--processes")
+                ? Integer.parseInt(options.get(options.indexOf("--processes") + 1)) : 1;
+        int rank = options.contains("--rank") ? Integer.parseInt(options.get(options.indexOf("--rank") + 1)) : 0;
+
         System.out.println("Loading data...");
-        Data data = new Data("data/fashion_mnist", 10);
+        Data data = new Data(DATA, 10, true, false);  // the test vectors are streamed by the prediction pipeline
 
         System.out.println("Initialising Neural Network...");
-        NeuralNetwork neuralNetwork = new NeuralNetworkBuilder(data,
+        NeuralNetworkBuilder builder = new NeuralNetworkBuilder(data,
                 0.00184,
                 1440,
                 2048,
                 0.35,
                 0.9,
                 1,
-                16)
-                .addLayer(128, new ReLuFunction())
-                .build(new SoftMaxFunction());
+                THREADS)
+                .setBatched(true)
+                .setVectorKernels(options.contains("--vector"))
+                .addLayer(128, new ReLuFunction());
+
+        if (processes > 1) {
+            builder.setProcessGroup(ProcessGroup.tcp(rank, processes, "localhost", BASE_PORT));
+        }
+        if (options.contains("--prefetch") || options.contains("--augment")) {
+            builder.setPrefetch(true);
+        }
+        if (options.contains("--augment")) {
+            builder.setAugmentation(new Augmentation(28, 28, 2, true));
+        }
+        if (options.contains("--checkpoint")) {
+            builder.setCheckpoint(CHECKPOINT, 100);
+        }
+        if (options.contains("--early-stopping")) {
+            builder.setValidation(0.1, 40).setEarlyStopping(5, 0.001);
+        }
+        CsvMetricsWriter metrics = options.contains("--metrics") && rank == 0 ? new CsvMetricsWriter(METRICS) : null;
+        builder.setListener(metrics);
+        NeuralNetwork neuralNetwork = builder.build(new SoftMaxFunction());
 
-        System.out.println("Training...");
-        neuralNetwork.train();
+        if (options.contains("--inference")) {
+            System.out.println("Loading " + CHECKPOINT + "...");
+            neuralNetwork.restoreWeights(Checkpoint.read(CHECKPOINT));
+        } else {
+            if (options.contains("--resume") && Files.exists(CHECKPOINT)) {
+                neuralNetwork.restore(Checkpoint.read(CHECKPOINT));
+                System.out.println("Resuming after step " + neuralNetwork.getCompletedSteps() + "...");
+            }
+            System.out.println("Training...");
+            neuralNetwork.train();
+        }
+        if (metrics != null) {
+            metrics.close();
+        }
 
         // evaluate and save test results
-        neuralNetwork.evaluate("train_predictions.csv", true);
-        neuralNetwork.evaluate("test_predictions.csv", false);
+        if (rank == 0) {
+            System.out.println("==============");
+            neuralNetwork.evaluate("train_predictions.csv", true);
+            // streamed from the CSV, normalized by its own statistics like the test vectors of Data
+            new PredictionPipeline(neuralNetwork.createInferenceModel(), THREADS, PREDICTION_CHUNK_ROWS, 0)
+                    .run(Path.of(DATA + "_test_vectors.csv"), Path.of("test_predictions.csv"));
+        }
     }
 }
\ No newline at end of file
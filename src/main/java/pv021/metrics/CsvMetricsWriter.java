@@ -0,0 +1,26 @@
+package pv021.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes the metrics as CSV with a header, the times in milliseconds.
+ */
+public class CsvMetricsWriter extends MetricsWriter {
+    public CsvMetricsWriter(Path path) throws IOException {
+        super(path);
+    }
+
+    @Override
+    protected String getHeader() {
+        return "step,samples,step_ms,pass_ms,update_ms,samples_per_second,loss,running_loss,accuracy";
+    }
+
+    @Override
+    protected String format(StepMetrics metrics) {
+        return metrics.getStep() + "," + metrics.getSamples() + "," + toMillis(metrics.getStepNanos()) + ","
+                + toMillis(metrics.getPassNanos()) + "," + toMillis(metrics.getUpdateNanos()) + ","
+                + metrics.getSamplesPerSecond() + "," + metrics.getLoss() + "," + metrics.getRunningLoss() + ","
+                + metrics.getAccuracy();
+    }
+}
@@ -0,0 +1,36 @@
+package pv021.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes the metrics as one JSON object per line, the times in milliseconds. JSON has no NaN or infinity, so
+ * non-finite values, e.g. the loss of a diverged training, are written as null.
+ */
+public class JsonLinesMetricsWriter extends MetricsWriter {
+    public JsonLinesMetricsWriter(Path path) throws IOException {
+        super(path);
+    }
+
+    @Override
+    protected String getHeader() {
+        return null;
+    }
+
+    @Override
+    protected String format(StepMetrics metrics) {
+        return "{\"step\":" + metrics.getStep()
+                + ",\"samples\":" + metrics.getSamples()
+                + ",\"step_ms\":" + toMillis(metrics.getStepNanos())
+                + ",\"pass_ms\":" + toMillis(metrics.getPassNanos())
+                + ",\"update_ms\":" + toMillis(metrics.getUpdateNanos())
+                + ",\"samples_per_second\":" + toJson(metrics.getSamplesPerSecond())
+                + ",\"loss\":" + toJson(metrics.getLoss())
+                + ",\"running_loss\":" + toJson(metrics.getRunningLoss())
+                + ",\"accuracy\":" + toJson(metrics.getAccuracy()) + "}";
+    }
+
+    private static String toJson(double value) {
+        return Double.isFinite(value) ? String.valueOf(value) : "null";
+    }
+}
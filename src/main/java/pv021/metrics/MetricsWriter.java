@@ -0,0 +1,45 @@
+package pv021.metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A listener writing one line of text per step into a file, buffered until it is closed.
+ */
+public abstract class MetricsWriter implements TrainingListener, Closeable {
+    private final BufferedWriter writer;
+
+    protected MetricsWriter(Path path) throws IOException {
+        writer = Files.newBufferedWriter(path);
+        String header = getHeader();
+        if (header != null) {
+            writer.write(header);
+            writer.newLine();
+        }
+    }
+
+    /**
+     * @return the first line of the file, or null if there is none
+     */
+    protected abstract String getHeader();
+
+    protected abstract String format(StepMetrics metrics);
+
+    @Override
+    public void onStep(StepMetrics metrics) throws IOException {
+        writer.write(format(metrics));
+        writer.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    protected static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+}
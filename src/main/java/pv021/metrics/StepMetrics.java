@@ -0,0 +1,84 @@
+package pv021.metrics;
+
+/**
+ * The metrics of one training step.
+ * <p>
+ * The step time consists of the sampling of the minibatch by the sampler (with the prefetch, the wait for the staged
+ * minibatch), the parallel forward and backward passes over it and the update. The validation and the checkpoints
+ * are not included. The loss is the mean cross entropy -log y_label of the minibatch, and the accuracy the share
+ * of its samples classified correctly, both measured by the forward pass before the update of the weights.
+ * <p>
+ * The asynchronous training is reported as a single step over the samples of all its updates, see
+ * {@link pv021.network.builder.NeuralNetworkBuilder#setAsynchronous}.
+ */
+public final class StepMetrics {
+    private final int step;
+    private final int samples;
+    private final long stepNanos;
+    private final long passNanos;
+    private final long updateNanos;
+    private final double loss;
+    private final double runningLoss;
+    private final double accuracy;
+
+    public StepMetrics(int step, int samples, long stepNanos, long passNanos, long updateNanos, double loss,
+                       double runningLoss, double accuracy) {
+        this.step = step;
+        this.samples = samples;
+        this.stepNanos = stepNanos;
+        this.passNanos = passNanos;
+        this.updateNanos = updateNanos;
+        this.loss = loss;
+        this.runningLoss = runningLoss;
+        this.accuracy = accuracy;
+    }
+
+    /**
+     * @return the 1-based number of the step
+     */
+    public int getStep() {
+        return step;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public long getStepNanos() {
+        return stepNanos;
+    }
+
+    /**
+     * @return the time of the parallel forward and backward passes over the minibatch
+     */
+    public long getPassNanos() {
+        return passNanos;
+    }
+
+    /**
+     * @return the time of the update: the parallel tree reduction of the gradients of the workers, their all-reduce
+     * in a process group and the parallel update of the weights by the optimizer
+     */
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    public double getSamplesPerSecond() {
+        return samples * 1e9 / stepNanos;
+    }
+
+    public double getLoss() {
+        return loss;
+    }
+
+    /**
+     * @return an exponential moving average of the losses of the steps so far
+     */
+    public double getRunningLoss() {
+        return runningLoss;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+}
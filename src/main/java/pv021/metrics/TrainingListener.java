@@ -0,0 +1,11 @@
+package pv021.metrics;
+
+import java.io.IOException;
+
+/**
+ * Receives the metrics of every training step. Called by the training thread after the weights are updated,
+ * so a slow listener slows the training down.
+ */
+public interface TrainingListener {
+    void onStep(StepMetrics metrics) throws IOException;
+}
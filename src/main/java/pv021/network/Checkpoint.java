@@ -0,0 +1,274 @@
+package pv021.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A snapshot of a network: its topology, weights, the state of the optimizer and of the random generator,
+ * the state of the sampler of the training samples, the number of completed steps and the state of the early
+ * stopping.
+ * <p>
+ * Format (little endian, strings as an int length followed by UTF-8 bytes):
+ * <pre>
+ * int      magic, int version
+ * int      layer count, then for every layer: int size, string activation function class,
+ *          int parameter count, double[] activation function parameters
+ * string   optimizer class
+ * int      completed steps
+ * int      random length, byte[] serialized java.util.Random
+ * int      sampler state length, int[] sampler state
+ * double[] weights of every non-output layer, lengths given by the topology
+ * int      state array count, then for every array: int length, double[] values
+ * double   best validation loss, int step of the best validation, int validations without improvement
+ * int      1 if the weights of the best validation follow, then double[] of every non-output layer, else 0
+ * </pre>
+ * The arrays are transferred in bulk through views of a single buffer.
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x50564332;  // "PVC2"
+    private static final int VERSION = 2;
+
+    private final int[] sizes;
+    private final String[] activationFunctions;
+    private final double[][] activationParameters;
+    private final String optimizer;
+    private final int completedSteps;
+    private final byte[] random;
+    private final int[] samplerState;
+    private final double[][] weights;
+    private final double[][] optimizerState;
+    private final double bestLoss;
+    private final int bestStep;
+    private final int validationsWithoutImprovement;
+    private final double[][] bestWeights;  // null before the first improvement of the validation loss
+
+    public Checkpoint(int[] sizes, String[] activationFunctions, double[][] activationParameters, String optimizer,
+                      int completedSteps, byte[] random, int[] samplerState, double[][] weights,
+                      double[][] optimizerState, double bestLoss, int bestStep, int validationsWithoutImprovement,
+                      double[][] bestWeights) {
+        this.sizes = sizes;
+        this.activationFunctions = activationFunctions;
+        this.activationParameters = activationParameters;
+        this.optimizer = optimizer;
+        this.completedSteps = completedSteps;
+        this.random = random;
+        this.samplerState = samplerState;
+        this.weights = weights;
+        this.optimizerState = optimizerState;
+        this.bestLoss = bestLoss;
+        this.bestStep = bestStep;
+        this.validationsWithoutImprovement = validationsWithoutImprovement;
+        this.bestWeights = bestWeights;
+    }
+
+    /**
+     * Writes the checkpoint into a temporary file, which then atomically replaces the file at path.
+     */
+    public void write(Path path) throws IOException {
+        long size = 3L * Integer.BYTES + 2L * Integer.BYTES + random.length
+                + Integer.BYTES + (long) samplerState.length * Integer.BYTES + Integer.BYTES
+                + stringSize(optimizer) + Double.BYTES + 3L * Integer.BYTES;
+        for (int l = 0; l < sizes.length; l++) {
+            size += 2L * Integer.BYTES + stringSize(activationFunctions[l])
+                    + (long) activationParameters[l].length * Double.BYTES;
+        }
+        for (double[] layerWeights : weights) {
+            size += (long) layerWeights.length * Double.BYTES * (bestWeights != null ? 2 : 1);
+        }
+        for (double[] state : optimizerState) {
+            size += Integer.BYTES + (long) state.length * Double.BYTES;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Checkpoint of " + size + " bytes is too large!");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(sizes.length);
+        for (int l = 0; l < sizes.length; l++) {
+            buffer.putInt(sizes[l]);
+            putString(buffer, activationFunctions[l]);
+            buffer.putInt(activationParameters[l].length);
+            putDoubles(buffer, activationParameters[l]);
+        }
+        putString(buffer, optimizer);
+        buffer.putInt(completedSteps);
+        buffer.putInt(random.length).put(random);
+        buffer.putInt(samplerState.length);
+        putInts(buffer, samplerState);
+        for (double[] layerWeights : weights) {
+            putDoubles(buffer, layerWeights);
+        }
+        buffer.putInt(optimizerState.length);
+        for (double[] state : optimizerState) {
+            buffer.putInt(state.length);
+            putDoubles(buffer, state);
+        }
+        buffer.putDouble(bestLoss).putInt(bestStep).putInt(validationsWithoutImprovement);
+        buffer.putInt(bestWeights != null ? 1 : 0);
+        if (bestWeights != null) {
+            for (double[] layerWeights : bestWeights) {
+                putDoubles(buffer, layerWeights);
+            }
+        }
+        buffer.flip();
+
+        Path temporaryPath = Files.createTempFile(path.toAbsolutePath().getParent(), "checkpoint", ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Checkpoint read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalStateException(path + " is not a checkpoint!");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("Checkpoint " + path + " has unsupported version " + version + "!");
+            }
+
+            int layerCount = buffer.getInt();
+            int[] sizes = new int[layerCount];
+            String[] activationFunctions = new String[layerCount];
+            double[][] activationParameters = new double[layerCount][];
+            for (int l = 0; l < layerCount; l++) {
+                sizes[l] = buffer.getInt();
+                activationFunctions[l] = getString(buffer);
+                activationParameters[l] = getDoubles(buffer, buffer.getInt());
+            }
+            String optimizer = getString(buffer);
+            int completedSteps = buffer.getInt();
+            byte[] random = new byte[buffer.getInt()];
+            buffer.get(random);
+            int[] samplerState = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(samplerState);
+            buffer.position(buffer.position() + samplerState.length * Integer.BYTES);
+
+            double[][] weights = getWeights(buffer, sizes);
+            double[][] optimizerState = new double[buffer.getInt()][];
+            for (int s = 0; s < optimizerState.length; s++) {
+                optimizerState[s] = getDoubles(buffer, buffer.getInt());
+            }
+            double bestLoss = buffer.getDouble();
+            int bestStep = buffer.getInt();
+            int validationsWithoutImprovement = buffer.getInt();
+            double[][] bestWeights = buffer.getInt() != 0 ? getWeights(buffer, sizes) : null;
+            return new Checkpoint(sizes, activationFunctions, activationParameters, optimizer, completedSteps, random,
+                    samplerState, weights, optimizerState, bestLoss, bestStep, validationsWithoutImprovement,
+                    bestWeights);
+        }
+    }
+
+    private static double[][] getWeights(ByteBuffer buffer, int[] sizes) {
+        double[][] weights = new double[sizes.length - 1][];
+        for (int l = 0; l < sizes.length - 1; l++) {
+            weights[l] = getDoubles(buffer, sizes[l + 1] * (sizes[l] + 1));
+        }
+        return weights;
+    }
+
+    private static long stringSize(String value) {
+        return Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+    }
+
+    private static void putDoubles(ByteBuffer buffer, double[] values) {
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Double.BYTES);
+    }
+
+    private static double[] getDoubles(ByteBuffer buffer, int length) {
+        double[] values = new double[length];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + length * Double.BYTES);
+        return values;
+    }
+
+    public int[] getSizes() {
+        return sizes;
+    }
+
+    public String[] getActivationFunctions() {
+        return activationFunctions;
+    }
+
+    public double[][] getActivationParameters() {
+        return activationParameters;
+    }
+
+    public String getOptimizer() {
+        return optimizer;
+    }
+
+    public int getCompletedSteps() {
+        return completedSteps;
+    }
+
+    public byte[] getRandom() {
+        return random;
+    }
+
+    public int[] getSamplerState() {
+        return samplerState;
+    }
+
+    public double[][] getWeights() {
+        return weights;
+    }
+
+    public double[][] getOptimizerState() {
+        return optimizerState;
+    }
+
+    public double getBestLoss() {
+        return bestLoss;
+    }
+
+    public int getBestStep() {
+        return bestStep;
+    }
+
+    public int getValidationsWithoutImprovement() {
+        return validationsWithoutImprovement;
+    }
+
+    /**
+     * @return the weights of the best validation, null before the first improvement of the validation loss
+     */
+    public double[][] getBestWeights() {
+        return bestWeights;
+    }
+}
@@ -0,0 +1,359 @@
+package pv021.network;
+
+import pv021.data.Dataset;
+import pv021.function.activation.ActivationFunction;
+import pv021.function.error.ErrorFunction;
+import pv021.kernel.Gemm;
+import pv021.kernel.Kernels;
+
+import java.util.List;
+
+/**
+ * The batched forward and backward passes of one worker, compiled from the layers into a fixed array of steps,
+ * on the double batch buffers of the layers or, in the float precision modes, on the float ones.
+ * <p>
+ * Every step holds the buffers of its layers and of its worker, resolved once when the plan is compiled, so
+ * running the plan looks nothing up and allocates nothing. The element-wise work is fused into the matrix products
+ * as {@link Gemm.RowEpilogue}s, which run on every row of a product while it is still in the cache:
+ * <ul>
+ * <li>the activation of a layer into its product with the weights (the bias being the constant first input),</li>
+ * <li>the partial derivatives of the error into the activation of the output layer, for the softmax with the cross
+ * entropy directly with respect to the potentials,</li>
+ * <li>the derivative of the activation of a hidden layer into the product giving the partial derivatives with
+ * respect to its outputs.</li>
+ * </ul>
+ * The results are the same as of the unfused passes, only the order of the independent operations changes.
+ */
+final class ExecutionPlan {
+    private final Gather gather;
+    private final Step[] forwardSteps;
+    private final Step[] backwardSteps;
+
+    /**
+     * Compiles the plan of the worker tid.
+     *
+     * @param floats whether the layers have the float batch buffers instead of the double ones
+     * @param fusedOutput whether the output layer is a softmax followed by the cross entropy
+     */
+    ExecutionPlan(List<Layer> layers, int tid, Kernels kernels, ErrorFunction errorFunction, boolean floats,
+                  boolean fusedOutput) {
+        int count = layers.size();
+        Layer inputLayer = layers.get(0);
+        int[] labels = new int[floats ? inputLayer.getFloatBatchOutputs()[tid].length
+                : inputLayer.getBatchOutputs()[tid].length];
+
+        gather = floats ? new Gather(null, inputLayer.getFloatBatchOutputs()[tid], labels)
+                : new Gather(inputLayer.getBatchOutputs()[tid], null, labels);
+        forwardSteps = new Step[count];
+        forwardSteps[0] = gather;
+        for (int l = 1; l < count; l++) {
+            int[] outputLabels = l == count - 1 ? labels : null;
+            forwardSteps[l] = floats
+                    ? new FloatDenseForward(layers.get(l - 1), layers.get(l), tid, kernels, outputLabels,
+                    errorFunction, fusedOutput)
+                    : new DenseForward(layers.get(l - 1), layers.get(l), tid, kernels, outputLabels, errorFunction,
+                    fusedOutput);
+        }
+
+        backwardSteps = new Step[count - 1];
+        for (int l = count - 1; l >= 1; l--) {
+            boolean outputDerivative = l == count - 1 && !fusedOutput;
+            backwardSteps[count - 1 - l] = floats
+                    ? new FloatDenseBackward(layers.get(l - 1), layers.get(l), tid, kernels, outputDerivative, l > 1)
+                    : new DenseBackward(layers.get(l - 1), layers.get(l), tid, kernels, outputDerivative, l > 1);
+        }
+    }
+
+    /**
+     * Forward pass of the samples at positions [from, from + rows) of samples, which also computes the partial
+     * derivatives of the error with respect to the output layer.
+     */
+    void forward(Dataset dataset, int[] samples, int from, int rows) {
+        gather.dataset = dataset;
+        gather.samples = samples;
+        gather.from = from;
+        for (Step step : forwardSteps) {
+            step.run(rows);
+        }
+        gather.dataset = null;
+        gather.samples = null;
+    }
+
+    /**
+     * Backward pass of the rows of the last {@link #forward}, accumulating the weight gradients of all the rows.
+     */
+    void backward(int rows) {
+        for (Step step : backwardSteps) {
+            step.run(rows);
+        }
+    }
+
+    private abstract static class Step {
+        abstract void run(int rows);
+    }
+
+    /**
+     * Copies the input vectors, after the constant bias output, and their labels into the buffers of the worker.
+     */
+    private static final class Gather extends Step {
+        private final double[][] inputs;  // null in the float precision modes
+        private final float[][] floatInputs;  // null in the double precision
+        private final int[] labels;
+        private Dataset dataset;
+        private int[] samples;
+        private int from;
+
+        private Gather(double[][] inputs, float[][] floatInputs, int[] labels) {
+            this.inputs = inputs;
+            this.floatInputs = floatInputs;
+            this.labels = labels;
+        }
+
+        @Override
+        void run(int rows) {
+            for (int b = 0; b < rows; b++) {
+                if (floatInputs != null) {
+                    floatInputs[b][0] = 1; // bias
+                    dataset.copyVector(samples[from + b], floatInputs[b], 1);
+                } else {
+                    inputs[b][0] = 1; // bias
+                    dataset.copyVector(samples[from + b], inputs[b], 1);
+                }
+                labels[b] = dataset.getLabel(samples[from + b]);
+            }
+        }
+    }
+
+    /**
+     * potential_bj = sum_i y_bi * w_ji, the bias included through the constant output y_b0 = 1, with the activation
+     * and, in the output layer, the partial derivatives of the error as the epilogue.
+     */
+    private static final class DenseForward extends Step implements Gemm.RowEpilogue {
+        private final Kernels kernels;
+        private final double[][] previousOutputs;
+        private final double[][] transposedWeights;
+        private final double[][] potentials;
+        private final double[][] outputs;
+        private final ActivationFunction activationFunction;
+        private final int size;
+        private final int previousSize;
+
+        // of the output layer only
+        private final int[] labels;  // null in the hidden layers
+        private final double[][] terms;
+        private final ErrorFunction errorFunction;
+        private final boolean fusedOutput;
+
+        private DenseForward(Layer previousLayer, Layer layer, int tid, Kernels kernels, int[] labels,
+                             ErrorFunction errorFunction, boolean fusedOutput) {
+            this.kernels = kernels;
+            this.previousOutputs = previousLayer.getBatchOutputs()[tid];
+            this.transposedWeights = previousLayer.getTransposedWeights();
+            this.potentials = layer.getBatchPotentials()[tid];
+            this.outputs = layer.getBatchOutputs()[tid];
+            this.activationFunction = layer.getActivationFunction();
+            this.size = layer.getSize();
+            this.previousSize = previousLayer.getSize();
+            this.labels = labels;
+            this.terms = layer.getBatchChainRuleTerms()[tid];
+            this.errorFunction = errorFunction;
+            this.fusedOutput = fusedOutput;
+        }
+
+        @Override
+        void run(int rows) {
+            Gemm.multiply(kernels, previousOutputs, transposedWeights, potentials, rows, size, previousSize + 1,
+                    this);
+        }
+
+        @Override
+        public void apply(int b) {
+            outputs[b][0] = 1; // bias
+            activationFunction.computeOutputs(potentials[b], outputs[b], 1, size);
+            if (labels == null) {
+                return;
+            }
+
+            double[] rowOutputs = outputs[b];
+            double[] rowTerms = terms[b];
+            int label = labels[b];
+            for (int j = 0; j < size; j++) {
+                double y = rowOutputs[j + 1];
+                double d = j == label ? 1 : 0;
+
+                // for the softmax followed by the cross entropy, dE/dy_j * dy_j/dpotential_j = y_j - d_j,
+                // see NeuralNetwork#computeOutputTerms
+                rowTerms[j] = fusedOutput ? y - d : errorFunction.calculatePartialDerivative(y, d);
+            }
+        }
+    }
+
+    /**
+     * The partial derivatives with respect to the outputs of the previous layer, with the derivative of its
+     * activation as the epilogue, and the accumulation of the weight gradients.
+     */
+    private static final class DenseBackward extends Step implements Gemm.RowEpilogue {
+        private final Kernels kernels;
+        private final double[][] outputs;
+        private final double[][] terms;
+        private final ActivationFunction activationFunction;
+        private final int size;
+        private final boolean outputDerivative;  // the derivative of the unfused output layer, before the products
+        private final boolean propagates;  // whether the previous layer is a hidden one
+        private final double[][] previousOutputs;
+        private final double[][] previousTerms;
+        private final double[][] weightsWithoutBias;
+        private final double[][] accumulator;
+        private final ActivationFunction previousActivationFunction;
+        private final int previousSize;
+
+        private DenseBackward(Layer previousLayer, Layer layer, int tid, Kernels kernels, boolean outputDerivative,
+                              boolean propagates) {
+            this.kernels = kernels;
+            this.outputs = layer.getBatchOutputs()[tid];
+            this.terms = layer.getBatchChainRuleTerms()[tid];
+            this.activationFunction = layer.getActivationFunction();
+            this.size = layer.getSize();
+            this.outputDerivative = outputDerivative;
+            this.propagates = propagates;
+            this.previousOutputs = previousLayer.getBatchOutputs()[tid];
+            this.previousTerms = propagates ? previousLayer.getBatchChainRuleTerms()[tid] : null;
+            this.weightsWithoutBias = previousLayer.getWeightsWithoutBias();
+            this.accumulator = previousLayer.getWeightsStepAccumulator()[tid];
+            this.previousActivationFunction = previousLayer.getActivationFunction();
+            this.previousSize = previousLayer.getSize();
+        }
+
+        @Override
+        void run(int rows) {
+            if (outputDerivative) {
+                for (int b = 0; b < rows; b++) {
+                    activationFunction.multiplyByDerivative(outputs[b], 1, terms[b], size);
+                }
+            }
+            if (propagates) {
+                Gemm.multiply(kernels, terms, weightsWithoutBias, previousTerms, rows, previousSize, size, this);
+            }
+            Gemm.multiplyTransposedAAdd(kernels, terms, previousOutputs, accumulator, size, previousSize + 1, rows);
+        }
+
+        @Override
+        public void apply(int b) {
+            previousActivationFunction.multiplyByDerivative(previousOutputs[b], 1, previousTerms[b], previousSize);
+        }
+    }
+
+    /**
+     * {@link DenseForward} on the float buffers.
+     */
+    private static final class FloatDenseForward extends Step implements Gemm.RowEpilogue {
+        private final Kernels kernels;
+        private final float[][] previousOutputs;
+        private final float[][] transposedWeights;
+        private final float[][] potentials;
+        private final float[][] outputs;
+        private final ActivationFunction activationFunction;
+        private final int size;
+        private final int previousSize;
+
+        // of the output layer only
+        private final int[] labels;  // null in the hidden layers
+        private final float[][] terms;
+        private final ErrorFunction errorFunction;
+        private final boolean fusedOutput;
+
+        private FloatDenseForward(Layer previousLayer, Layer layer, int tid, Kernels kernels, int[] labels,
+                                  ErrorFunction errorFunction, boolean fusedOutput) {
+            this.kernels = kernels;
+            this.previousOutputs = previousLayer.getFloatBatchOutputs()[tid];
+            this.transposedWeights = previousLayer.getFloatTransposedWeights();
+            this.potentials = layer.getFloatBatchPotentials()[tid];
+            this.outputs = layer.getFloatBatchOutputs()[tid];
+            this.activationFunction = layer.getActivationFunction();
+            this.size = layer.getSize();
+            this.previousSize = previousLayer.getSize();
+            this.labels = labels;
+            this.terms = layer.getFloatBatchChainRuleTerms()[tid];
+            this.errorFunction = errorFunction;
+            this.fusedOutput = fusedOutput;
+        }
+
+        @Override
+        void run(int rows) {
+            Gemm.multiply(kernels, previousOutputs, transposedWeights, potentials, rows, size, previousSize + 1,
+                    this);
+        }
+
+        @Override
+        public void apply(int b) {
+            outputs[b][0] = 1; // bias
+            activationFunction.computeOutputs(potentials[b], outputs[b], 1, size);
+            if (labels == null) {
+                return;
+            }
+
+            float[] rowOutputs = outputs[b];
+            float[] rowTerms = terms[b];
+            int label = labels[b];
+            for (int j = 0; j < size; j++) {
+                double y = rowOutputs[j + 1];
+                double d = j == label ? 1 : 0;
+                rowTerms[j] = (float) (fusedOutput ? y - d : errorFunction.calculatePartialDerivative(y, d));
+            }
+        }
+    }
+
+    /**
+     * {@link DenseBackward} on the float buffers.
+     */
+    private static final class FloatDenseBackward extends Step implements Gemm.RowEpilogue {
+        private final Kernels kernels;
+        private final float[][] outputs;
+        private final float[][] terms;
+        private final ActivationFunction activationFunction;
+        private final int size;
+        private final boolean outputDerivative;
+        private final boolean propagates;
+        private final float[][] previousOutputs;
+        private final float[][] previousTerms;
+        private final float[][] weightsWithoutBias;
+        private final float[][] accumulator;
+        private final ActivationFunction previousActivationFunction;
+        private final int previousSize;
+
+        private FloatDenseBackward(Layer previousLayer, Layer layer, int tid, Kernels kernels,
+                                   boolean outputDerivative, boolean propagates) {
+            this.kernels = kernels;
+            this.outputs = layer.getFloatBatchOutputs()[tid];
+            this.terms = layer.getFloatBatchChainRuleTerms()[tid];
+            this.activationFunction = layer.getActivationFunction();
+            this.size = layer.getSize();
+            this.outputDerivative = outputDerivative;
+            this.propagates = propagates;
+            this.previousOutputs = previousLayer.getFloatBatchOutputs()[tid];
+            this.previousTerms = propagates ? previousLayer.getFloatBatchChainRuleTerms()[tid] : null;
+            this.weightsWithoutBias = previousLayer.getFloatWeightsWithoutBias();
+            this.accumulator = previousLayer.getFloatWeightsStepAccumulator()[tid];
+            this.previousActivationFunction = previousLayer.getActivationFunction();
+            this.previousSize = previousLayer.getSize();
+        }
+
+        @Override
+        void run(int rows) {
+            if (outputDerivative) {
+                for (int b = 0; b < rows; b++) {
+                    activationFunction.multiplyByDerivative(outputs[b], 1, terms[b], size);
+                }
+            }
+            if (propagates) {
+                Gemm.multiply(kernels, terms, weightsWithoutBias, previousTerms, rows, previousSize, size, this);
+            }
+            Gemm.multiplyTransposedAAdd(kernels, terms, previousOutputs, accumulator, size, previousSize + 1, rows);
+        }
+
+        @Override
+        public void apply(int b) {
+            previousActivationFunction.multiplyByDerivative(previousOutputs[b], 1, previousTerms[b], previousSize);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package pv021.network;
+
+import pv021.data.Dataset;
+import pv021.function.activation.ActivationFunction;
+import pv021.function.activation.SoftMaxFunction;
+import pv021.kernel.Gemm;
+import pv021.kernel.Kernels;
+
+import java.util.Arrays;
+
+/**
+ * A read-only copy of a trained network, which only runs the forward pass.
+ * <p>
+ * The weights of every layer are packed transposed (w_ji at [l][i][j], i = 0 being the bias), so that the potentials
+ * are accumulated along rows, and are never modified after the construction. The model is therefore safe to use
+ * from any number of threads at once, as long as every thread has its own {@link Scratch}, or
+ * {@link BatchScratch} for classifying many inputs at once. The predictions allocate nothing.
+ */
+public final class InferenceModel {
+    private final int[] sizes;
+    private final ActivationFunction[] activationFunctions;
+    private final double[][][] transposedWeights;
+    private final Kernels kernels;
+    private final ThreadLocal<Scratch> scratches = ThreadLocal.withInitial(this::newScratch);
+
+    InferenceModel(int[] sizes, ActivationFunction[] activationFunctions, double[][] weights, Kernels kernels) {
+        this.sizes = sizes.clone();
+        this.kernels = kernels;
+        this.activationFunctions = activationFunctions.clone();
+        this.transposedWeights = new double[sizes.length - 1][][];
+        for (int l = 0; l < sizes.length - 1; l++) {
+            int size = sizes[l];
+            int nextSize = sizes[l + 1];
+            transposedWeights[l] = new double[size + 1][nextSize];
+            for (int r = 0; r < nextSize; r++) {
+                for (int j = 0; j < size + 1; j++) {
+                    transposedWeights[l][j][r] = weights[l][r * (size + 1) + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the model from a checkpoint, the activation functions being created by their constructors taking
+     * their parameters, see {@link ActivationFunction#getParameters()}.
+     *
+     * @param kernels the kernels of the batched forward pass, see {@link Kernels#create(boolean)}
+     */
+    public static InferenceModel fromCheckpoint(Checkpoint checkpoint, Kernels kernels)
+            throws ReflectiveOperationException {
+        String[] names = checkpoint.getActivationFunctions();
+        ActivationFunction[] activationFunctions = new ActivationFunction[names.length];
+        for (int l = 0; l < names.length; l++) {
+            double[] parameters = checkpoint.getActivationParameters()[l];
+            Class<?>[] types = new Class<?>[parameters.length];
+            Arrays.fill(types, double.class);
+            activationFunctions[l] = (ActivationFunction) Class.forName(names[l]).getDeclaredConstructor(types)
+                    .newInstance(Arrays.stream(parameters).boxed().toArray());
+        }
+        return new InferenceModel(checkpoint.getSizes(), activationFunctions, checkpoint.getWeights(), kernels);
+    }
+
+    /**
+     * Per-thread buffers of a forward pass.
+     */
+    public static final class Scratch {
+        private final double[][] outputs;  // the bias output first
+        private final double[][] potentials;
+
+        private Scratch(int[] sizes) {
+            outputs = new double[sizes.length][];
+            potentials = new double[sizes.length][];
+            for (int l = 0; l < sizes.length; l++) {
+                outputs[l] = new double[sizes[l] + 1];
+                potentials[l] = new double[sizes[l]];
+            }
+        }
+    }
+
+    public Scratch newScratch() {
+        return new Scratch(sizes);
+    }
+
+    /**
+     * Buffers of a forward pass of up to a given number of inputs at once, one row per input.
+     */
+    public static final class BatchScratch {
+        private final int rows;
+        private final double[][][] outputs;  // [layer][row][neuron], the bias output first
+        private final double[][][] potentials;
+        private final Gemm.RowEpilogue[] activations;  // the activation of every layer, fused into its product
+
+        private BatchScratch(int[] sizes, ActivationFunction[] activationFunctions, int rows) {
+            this.rows = rows;
+            outputs = new double[sizes.length][rows][];
+            potentials = new double[sizes.length][rows][];
+            activations = new Gemm.RowEpilogue[sizes.length];
+            for (int l = 0; l < sizes.length; l++) {
+                for (int x = 0; x < rows; x++) {
+                    outputs[l][x] = new double[sizes[l] + 1];
+                    potentials[l][x] = new double[sizes[l]];
+                }
+                int layer = l;
+                activations[l] = x -> activationFunctions[layer].computeOutputs(potentials[layer][x],
+                        outputs[layer][x], 1, sizes[layer]);
+            }
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the row to be filled with the given input from index 1 on
+         */
+        public double[] getInput(int row) {
+            return outputs[0][row];
+        }
+
+        /**
+         * @return the outputs of the output layer for the given input from index 1 on
+         */
+        public double[] getOutput(int row) {
+            return outputs[outputs.length - 1][row];
+        }
+    }
+
+    public BatchScratch newBatchScratch(int rows) {
+        return new BatchScratch(sizes, activationFunctions, rows);
+    }
+
+    public int getInputSize() {
+        return sizes[0];
+    }
+
+    public int getOutputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * Classifies the input using a scratch pooled per thread.
+     */
+    public int predict(double[] input) {
+        return predict(input, scratches.get());
+    }
+
+    /**
+     * Classifies the input.
+     *
+     * @return the index of the most probable class
+     */
+    public int predict(double[] input, Scratch scratch) {
+        System.arraycopy(input, 0, scratch.outputs[0], 1, sizes[0]);
+        return argmax(scratch);
+    }
+
+    /**
+     * Classifies the k-th vector of the dataset.
+     */
+    public int predict(Dataset dataset, int k, Scratch scratch) {
+        dataset.copyVector(k, scratch.outputs[0], 1);
+        return argmax(scratch);
+    }
+
+    /**
+     * Computes the outputs of the output layer, e.g. the class probabilities of a softmax, into target.
+     */
+    public void computeOutputs(double[] input, double[] target, Scratch scratch) {
+        System.arraycopy(input, 0, scratch.outputs[0], 1, sizes[0]);
+        int last = sizes.length - 1;
+        forward(scratch, last);
+        activationFunctions[last].computeOutputs(scratch.potentials[last], target, 0, sizes[last]);
+    }
+
+    /**
+     * Classifies the first rows inputs of the scratch as one batch, a layer at a time by matrix products with
+     * the activations fused in, leaving the outputs of the output layer in the scratch.
+     *
+     * @param results receives the index of the most probable class of every input from offset on
+     */
+    public void predict(BatchScratch scratch, int rows, int[] results, int offset) {
+        if (rows > scratch.rows) {
+            throw new IllegalStateException("Batch of " + rows + " inputs exceeds the scratch!");
+        }
+        for (int l = 1; l < sizes.length; l++) {
+            double[][] previousOutputs = scratch.outputs[l - 1];
+            double[][] potentials = scratch.potentials[l];
+            for (int x = 0; x < rows; x++) {
+                previousOutputs[x][0] = 1; // bias
+            }
+            Gemm.multiply(kernels, previousOutputs, transposedWeights[l - 1], potentials, rows, sizes[l],
+                    sizes[l - 1] + 1, scratch.activations[l]);
+        }
+
+        int last = sizes.length - 1;
+        boolean softMax = activationFunctions[last] instanceof SoftMaxFunction;
+        for (int x = 0; x < rows; x++) {
+            // the same choice as for a single input, in case of rounding ties in the softmax
+            results[offset + x] = softMax ? argmax(scratch.potentials[last][x], 0, sizes[last])
+                    : argmax(scratch.outputs[last][x], 1, sizes[last]);
+        }
+    }
+
+    private int argmax(Scratch scratch) {
+        int last = sizes.length - 1;
+        forward(scratch, last);
+
+        double[] potentials = scratch.potentials[last];
+        if (activationFunctions[last] instanceof SoftMaxFunction) {
+            // the softmax preserves the order, so the most probable class has the maximal potential
+            return argmax(potentials, 0, sizes[last]);
+        }
+        double[] outputs = scratch.outputs[last];
+        activationFunctions[last].computeOutputs(potentials, outputs, 1, sizes[last]);
+        return argmax(outputs, 1, sizes[last]);
+    }
+
+    private static int argmax(double[] values, int offset, int length) {
+        int result = 0;
+        for (int j = 1; j < length; j++) {
+            if (values[offset + j] > values[offset + result]) {
+                result = j;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the outputs of the layers before the given one and the potentials of the given one.
+     */
+    private void forward(Scratch scratch, int toLayer) {
+        scratch.outputs[0][0] = 1; // bias
+        for (int l = 1; l <= toLayer; l++) {
+            double[] previousOutputs = scratch.outputs[l - 1];
+            double[] potentials = scratch.potentials[l];
+            double[][] weights = transposedWeights[l - 1];
+            int size = sizes[l];
+
+            for (int j = 0; j < size; j++) {
+                potentials[j] = 0;
+            }
+            for (int i = 0; i < sizes[l - 1] + 1; i++) {
+                double output = previousOutputs[i];
+                if (output == 0) {
+                    continue;
+                }
+                double[] row = weights[i];
+                for (int j = 0; j < size; j++) {
+                    potentials[j] += output * row[j];
+                }
+            }
+
+            if (l < toLayer) {
+                scratch.outputs[l][0] = 1; // bias
+                activationFunctions[l].computeOutputs(potentials, scratch.outputs[l], 1, size);
+            }
+        }
+    }
+}
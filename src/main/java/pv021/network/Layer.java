@@ -5,6 +5,18 @@ import pv021.function.activation.ActivationFunction;
 /**
  * The class represents a single layer in a neural network, managing
  * its neurons, weights, activations, and connections to the next layer.
+ * <p>
+ * The weights of the connections to the next layer are the parameters of the layer. They are stored in one
+ * flat row-major buffer, w_rj being at index r * (size + 1) + j (j = 0 is the bias), and the state of the
+ * optimizer uses the same layout. The hot loops of the forward and backward passes read two copies
+ * kept in sync by {@link #setWeight}: the transposed weights (w_rj at [j][r]) and the weights without
+ * the bias (w_rj at [r][j - 1]). Together with the gradient accumulator rows, which are aligned with
+ * the outputs, every inner loop then indexes all of its arrays by the loop variable alone, which is
+ * the shape the JIT auto-vectorizes.
+ * <p>
+ * In the float precision modes the passes read float copies and accumulate float weight steps instead, so
+ * the double copies and accumulators are not allocated. The flat buffer stays the double master copy updated
+ * by the optimizer, which gets the summed steps of a row through a double staging row of the updating worker.
  */
 
 public class Layer {
@@ -12,18 +24,36 @@ public class Layer {
     private final double[][] outputs;
     private final double[][] potentials;
 
-    private final double[][] weights;
+    private final double[] weights;
+    private final double[][] transposedWeights;
+    private final double[][] weightsWithoutBias;
     private final ActivationFunction activationFunction;
     private final int nextLayerSize;
 
+    // partial derivatives of the error with respect to the outputs, turned in place into the ones with respect
+    // to the potentials by the backward pass
     private final double[][] chainRuleTermWithOutput;
 
     private final double[][][] weightsStepAccumulator;
-    private final double[][] momentum;
-    private final double[][] rmsprop;
     private final int size;
 
-    public Layer(int size, int nextLayerSize, ActivationFunction activationFunction, boolean input, int threads) {
+    // per-thread matrices with one row per sample of the thread's part of the minibatch (batched mode only)
+    private final double[][][] batchOutputs;
+    private final double[][][] batchPotentials;
+    private final double[][][] batchChainRuleTerms;
+
+    // float copies of the weights, float gradient accumulators, float batch matrices and one double staging row
+    // of the optimizer per worker (float precision only)
+    private final float[][] floatTransposedWeights;
+    private final float[][] floatWeightsWithoutBias;
+    private final float[][][] floatWeightsStepAccumulator;
+    private final float[][][] floatBatchOutputs;
+    private final float[][][] floatBatchPotentials;
+    private final float[][][] floatBatchChainRuleTerms;
+    private final double[][] gradientStagingRows;
+
+    public Layer(int size, int nextLayerSize, ActivationFunction activationFunction, boolean input, int threads,
+                 int batchRows, boolean floatPrecision) {
         this.nextLayerSize = nextLayerSize;
         this.activationFunction = activationFunction;
         this.size = size;
@@ -33,10 +63,27 @@ public class Layer {
         chainRuleTermWithOutput = new double[threads][size];
 
         // size + 1 to include bias
-        this.weightsStepAccumulator = nextLayerSize > 0 ? new double[threads][nextLayerSize][size + 1] : null;
-        this.momentum = nextLayerSize > 0 ? new double[nextLayerSize][size + 1] : null;
-        this.weights = nextLayerSize > 0 ? new double[nextLayerSize][size + 1] : null;
-        this.rmsprop = nextLayerSize > 0 ? new double[nextLayerSize][size + 1] : null;
+        int parameters = nextLayerSize * (size + 1);
+        boolean doubleWeights = nextLayerSize > 0 && !floatPrecision;
+        this.weights = nextLayerSize > 0 ? new double[parameters] : null;
+        this.weightsStepAccumulator = doubleWeights ? new double[threads][nextLayerSize][size + 1] : null;
+        this.transposedWeights = doubleWeights ? new double[size + 1][nextLayerSize] : null;
+        this.weightsWithoutBias = doubleWeights ? new double[nextLayerSize][size] : null;
+
+        boolean doubleBatches = batchRows > 0 && !floatPrecision;
+        this.batchOutputs = doubleBatches ? new double[threads][batchRows][size + 1] : null;
+        this.batchPotentials = doubleBatches && !input ? new double[threads][batchRows][size] : null;
+        this.batchChainRuleTerms = doubleBatches && !input ? new double[threads][batchRows][size] : null;
+
+        boolean floatWeights = floatPrecision && nextLayerSize > 0;
+        boolean floatBatches = floatPrecision && batchRows > 0;
+        this.floatTransposedWeights = floatWeights ? new float[size + 1][nextLayerSize] : null;
+        this.floatWeightsWithoutBias = floatWeights ? new float[nextLayerSize][size] : null;
+        this.floatWeightsStepAccumulator = floatWeights ? new float[threads][nextLayerSize][size + 1] : null;
+        this.gradientStagingRows = floatWeights ? new double[threads][size + 1] : null;
+        this.floatBatchOutputs = floatBatches ? new float[threads][batchRows][size + 1] : null;
+        this.floatBatchPotentials = floatBatches && !input ? new float[threads][batchRows][size] : null;
+        this.floatBatchChainRuleTerms = floatBatches && !input ? new float[threads][batchRows][size] : null;
     }
 
     public int getSize() {
@@ -63,10 +110,68 @@ public class Layer {
         return outputs;
     }
 
-    public double[][] getWeights() {
+    public double[] getWeights() {
         return weights;
     }
 
+    public double[][] getTransposedWeights() {
+        return transposedWeights;
+    }
+
+    public double[][] getWeightsWithoutBias() {
+        return weightsWithoutBias;
+    }
+
+    /**
+     * Sets w_rj in the parameter buffer and in the copies read by the forward and backward passes.
+     */
+    public void setWeight(int r, int j, double weight) {
+        weights[r * (size + 1) + j] = weight;
+        if (transposedWeights != null) {
+            transposedWeights[j][r] = weight;
+            if (j > 0) {
+                weightsWithoutBias[r][j - 1] = weight;
+            }
+        } else {
+            floatTransposedWeights[j][r] = (float) weight;
+            if (j > 0) {
+                floatWeightsWithoutBias[r][j - 1] = (float) weight;
+            }
+        }
+    }
+
+    /**
+     * Copies the weights w_r* of the parameter buffer into the copies read by the forward and backward passes,
+     * used after the whole row has been updated in place.
+     */
+    public void syncWeights(int r) {
+        int row = r * (size + 1);
+        if (transposedWeights != null) {
+            for (int j = 0; j < size + 1; j++) {
+                transposedWeights[j][r] = weights[row + j];
+            }
+            System.arraycopy(weights, row + 1, weightsWithoutBias[r], 0, size);
+        } else {
+            for (int j = 0; j < size + 1; j++) {
+                floatTransposedWeights[j][r] = (float) weights[row + j];
+            }
+            float[] floatRow = floatWeightsWithoutBias[r];
+            for (int j = 0; j < size; j++) {
+                floatRow[j] = (float) weights[row + 1 + j];
+            }
+        }
+    }
+
+    /**
+     * Rounds the weights w_r* of the parameter buffer to float, used when there are no double master weights.
+     */
+    public void roundWeights(int r) {
+        int row = r * (size + 1);
+        for (int j = 0; j < size + 1; j++) {
+            weights[row + j] = (float) weights[row + j];
+        }
+    }
+
     public double[][][] getWeightsStepAccumulator() {
         return weightsStepAccumulator;
     }
@@ -75,11 +180,43 @@ public class Layer {
         return chainRuleTermWithOutput;
     }
 
-    public double[][] getMomentum() {
-        return momentum;
+    public double[][][] getBatchOutputs() {
+        return batchOutputs;
+    }
+
+    public double[][][] getBatchPotentials() {
+        return batchPotentials;
+    }
+
+    public double[][][] getBatchChainRuleTerms() {
+        return batchChainRuleTerms;
+    }
+
+    public float[][] getFloatTransposedWeights() {
+        return floatTransposedWeights;
+    }
+
+    public float[][] getFloatWeightsWithoutBias() {
+        return floatWeightsWithoutBias;
+    }
+
+    public float[][][] getFloatWeightsStepAccumulator() {
+        return floatWeightsStepAccumulator;
+    }
+
+    public float[][][] getFloatBatchOutputs() {
+        return floatBatchOutputs;
+    }
+
+    public float[][][] getFloatBatchPotentials() {
+        return floatBatchPotentials;
+    }
+
+    public float[][][] getFloatBatchChainRuleTerms() {
+        return floatBatchChainRuleTerms;
     }
 
-    public double[][] getRmsprop() {
-        return rmsprop;
+    public double[][] getGradientStagingRows() {
+        return gradientStagingRows;
     }
 }
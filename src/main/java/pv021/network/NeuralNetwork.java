@@ -1,19 +1,43 @@
 package pv021.network;
 
+import pv021.data.ArrayDataset;
+import pv021.data.Augmentation;
+import pv021.data.BatchPrefetcher;
 import pv021.data.Data;
+import pv021.data.Dataset;
+import pv021.data.Sampler;
+import pv021.data.Sampling;
+import pv021.distributed.ProcessGroup;
+import pv021.distributed.RingAllReduce;
+import pv021.function.activation.ActivationFunction;
+import pv021.function.activation.SoftMaxFunction;
 import pv021.function.error.CrossEntropy;
 import pv021.function.error.ErrorFunction;
+import pv021.kernel.Gemm;
+import pv021.kernel.Kernels;
+import pv021.metrics.StepMetrics;
+import pv021.metrics.TrainingListener;
 import pv021.network.builder.LayerTemplate;
+import pv021.optimizer.LearningRateSchedule;
+import pv021.optimizer.Optimizer;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Random;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
-import java.util.stream.Collectors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 /**
@@ -26,245 +50,1020 @@ import java.util.stream.IntStream;
  * w_ji denotes the weight of the connection from neuron i (in the (l-1)-th layer) to neuron j (in the l-th layer)
  */
 
-public class NeuralNetwork {
+public class NeuralNetwork implements AutoCloseable {
 
     private final Data data;
     private final List<Layer> layers;
-    private final double learningRate;
-    private final Random random;
+    private final Optimizer optimizer;
+    private final LearningRateSchedule schedule;  // null for a constant learning rate
+    private Random random;
     private final int steps;
+    private int completedSteps;
+    private final Sampler sampler;
+    private final int[] minibatch;  // the indices of the samples of the current step
+
+    // the minibatches assembled in the background, see step
+    private final boolean prefetch;
+    private final Augmentation augmentation;  // null for none
+    private final int[] stagedSamples;  // the identity, the staged minibatch holds just its samples
+    private BatchPrefetcher prefetcher;  // running while the training runs
+    private boolean prefetched;  // whether the minibatch of the next step was requested
     private final int batch;
-    private final double momentumAlpha;
-    private final double rmsAlpha;
     private final ErrorFunction errorFunction = new CrossEntropy();
+    private final boolean fusedOutput;  // softmax output layer with the cross entropy, see computeOutputTerms
+    private final boolean batched;
+    private final Precision precision;
+    private final Kernels kernels;
+    private final ExecutionPlan[] plans;  // of every worker in the batched mode, null otherwise
+    private final Path checkpointPath;
+    private final int checkpointInterval;
+
+    // metrics of the steps, collected per worker only if there is a listener
+    private static final double MIN_PROBABILITY = 1e-15;  // bounds the loss of a zero output
+    private static final double LOSS_SMOOTHING = 0.9;
+    private final TrainingListener listener;
+    private final double[] stepLosses;
+    private final int[] stepCorrect;
+    private double runningLoss = Double.NaN;
+
+    // validation on held out training vectors and the early stopping, null without a validation
+    private final Validation validation;
+    private final double[] validationLosses;
+    private final int[] validationCorrect;
+    private double validationLoss = Double.NaN;  // of the last validation
+    private double validationAccuracy = Double.NaN;
+    private double bestLoss = Double.POSITIVE_INFINITY;
+    private int bestStep;
+    private double[][] bestWeights;
+    private int validationsWithoutImprovement;
+
+    // the asynchronous (Hogwild) mode, see trainAsynchronously
+    private final boolean asynchronous;
+    private final int maxStaleness;  // negative for an unbounded staleness
+    private final Sampler[] shardSamplers;  // the shard of every worker, null in the synchronous mode
 
+    // the data-parallel training of several processes, see updateWeights, null for a single process
+    private final ProcessGroup processGroup;
+    private RingAllReduce ring;  // connected while the training runs
+    private final double[] gradient;  // the gradients of all the layers in one buffer for the all-reduce
+
+    // number of workers, every worker owns the scratch buffers with its index in each layer
     private final int threads;
-    private final ThreadLocal<Integer> threadId;
     private final ForkJoinPool customThreadPool;
 
-    public NeuralNetwork(Data data, List<LayerTemplate> tempLayers, double learningRate, long seed, int steps,
-                         int batchSkip, double momentumAlpha, double rmsAlpha, int threads) {
+    public NeuralNetwork(Data data, List<LayerTemplate> tempLayers, Optimizer optimizer, LearningRateSchedule schedule,
+                         long seed, int steps, int batchSkip, int threads, boolean batched, Precision precision,
+                         boolean vectorKernels, Path checkpointPath, int checkpointInterval,
+                         TrainingListener listener, Validation validation, Sampling sampling, boolean asynchronous,
+                         int maxStaleness, ProcessGroup processGroup, boolean prefetch, Augmentation augmentation) {
         this.data = data;
         this.layers = new ArrayList<>();
-        this.learningRate = learningRate;
+        this.optimizer = optimizer;
+        this.schedule = schedule;
         this.random = new Random(seed);
         this.steps = steps;
-        this.batch = batchSkip;
-        this.momentumAlpha = momentumAlpha;
-        this.rmsAlpha = rmsAlpha;
+        // every process computes its part of the minibatch from its own shard
+        this.batch = processGroup != null ? (batchSkip + processGroup.getSize() - 1) / processGroup.getSize()
+                : batchSkip;
         this.threads = threads;
-        threadId = ThreadLocal.withInitial(() -> (int) (Thread.currentThread().getId() % threads));
+        this.batched = batched;
+        this.precision = precision;
+        this.kernels = Kernels.create(vectorKernels);
+        this.checkpointPath = checkpointPath;
+        this.checkpointInterval = checkpointInterval;
+        this.listener = listener;
+        this.stepLosses = listener != null ? new double[threads] : null;
+        this.stepCorrect = listener != null ? new int[threads] : null;
+        this.validation = validation;
+        this.validationLosses = validation != null ? new double[threads] : null;
+        this.validationCorrect = validation != null ? new int[threads] : null;
+        this.processGroup = processGroup;
+        int[] trainingSamples = trainingSamples(data.getTrain().getSize(), validation);
+        if (processGroup != null) {
+            int rank = processGroup.getRank();
+            trainingSamples = Arrays.copyOfRange(trainingSamples, rank * trainingSamples.length / processGroup.getSize(),
+                    (rank + 1) * trainingSamples.length / processGroup.getSize());
+        }
+        this.sampler = Sampler.create(sampling, trainingSamples, data.getTrain());
+        this.asynchronous = asynchronous;
+        this.maxStaleness = maxStaleness;
+        this.shardSamplers = asynchronous ? new Sampler[threads] : null;
+        for (int tid = 0; asynchronous && tid < threads; tid++) {
+            int[] shard = Arrays.copyOfRange(trainingSamples, tid * trainingSamples.length / threads,
+                    (tid + 1) * trainingSamples.length / threads);
+            shardSamplers[tid] = Sampler.create(sampling, shard, data.getTrain());
+        }
+        this.minibatch = new int[Math.min(sampler.getSize(), batch)];
+        this.prefetch = prefetch;
+        this.augmentation = augmentation;
+        this.stagedSamples = prefetch ? IntStream.range(0, minibatch.length).toArray() : null;
         customThreadPool = new ForkJoinPool(threads);
         initLayers(tempLayers);
+        fusedOutput = layers.get(layers.size() - 1).getActivationFunction() instanceof SoftMaxFunction
+                && errorFunction instanceof CrossEntropy;
+        this.plans = batched ? new ExecutionPlan[threads] : null;
+        for (int tid = 0; plans != null && tid < threads; tid++) {
+            plans[tid] = new ExecutionPlan(layers, tid, kernels, errorFunction, precision != Precision.DOUBLE,
+                    fusedOutput);
+        }
+        int parameters = 0;
+        for (int l = 0; l < layers.size() - 1; l++) {
+            parameters += layers.get(l).getWeights().length;
+        }
+        this.gradient = processGroup != null ? new double[parameters] : null;
+    }
+
+    /**
+     * @return the indices of the training vectors which are not held out for the validation
+     */
+    private static int[] trainingSamples(int size, Validation validation) {
+        boolean[] heldOut = new boolean[size];
+        if (validation != null) {
+            for (int k : validation.getSamples()) {
+                heldOut[k] = true;
+            }
+        }
+        return IntStream.range(0, size).filter(k -> !heldOut[k]).toArray();
     }
 
     private void initLayers(List<LayerTemplate> templateLayers) {
+        // in batched mode every thread gets an equal static part of the minibatch
+        int batchSize = Math.min(sampler.getSize(), batch);
+        int batchRows = batched ? (batchSize + threads - 1) / threads : 0;
+
         for (int i = 0; i < templateLayers.size(); i++) {
             LayerTemplate layerTemplate = templateLayers.get(i);
             LayerTemplate layerTemplateNext = i == templateLayers.size() - 1 ? null : templateLayers.get(i + 1);
             layers.add(new Layer(
                     layerTemplate.getSize(),
                     layerTemplateNext == null ? 0 : layerTemplateNext.getSize(),
-                    layerTemplate.getActivationFunction(), i == 0, threads));
+                    layerTemplate.getActivationFunction(), i == 0, threads, batchRows, precision != Precision.DOUBLE));
         }
         initializeWeights();
+
+        int[] parameters = new int[layers.size() - 1];
+        for (int l = 0; l < parameters.length; l++) {
+            parameters[l] = layers.get(l).getWeights().length;
+        }
+        optimizer.setKernels(kernels);
+        optimizer.initialize(parameters);
     }
 
     public void initializeWeights() {  // the Normal He-initialization
-        int n = data.getTrainVectors().get(0).size();
+        int n = data.getDimension();
 
         for (Layer layer : layers) {
             if (!layer.isOutputLayer()) {
                 for (int j = 0; j < layer.getSize() + 1; j++) {
                     for (int r = 0; r < layer.getNextLayerSize(); r++) {
-                        layer.getWeights()[r][j] = j == 0 ? 0 : random.nextGaussian(0, 2.0 / n);
+                        double weight = j == 0 ? 0 : random.nextGaussian(0, 2.0 / n);
+                        layer.setWeight(r, j, precision == Precision.FLOAT ? (float) weight : weight);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Trains the network until it completes all the steps, continuing from a restored checkpoint if any.
+     * <p>
+     * If checkpoints are enabled, a snapshot of the network is taken every checkpointInterval steps and after
+     * the last step. The snapshots are written by a background thread while the training goes on.
+     * <p>
+     * With a validation, the network is evaluated on the held out training vectors every interval steps and after
+     * the last step. With the early stopping, the training ends once the validation loss stops improving, and the
+     * weights of the best validation are restored before the last snapshot.
+     * <p>
+     * In a process group, every process trains on its own shard of the training vectors and the processes sum
+     * their gradients at every step, so that they all keep the same weights. The first process writes
+     * the checkpoints and reports the validation.
+     */
     public void train() throws Exception {  // Stochastic Gradient Descent
-        int p = data.getTrainVectors().size();  // number of training examples
+        if (asynchronous) {
+            trainAsynchronously();
+            return;
+        }
+        Dataset train = data.getTrain();
+        int p = sampler.getSize();  // number of training examples
         int batchSize = Math.min(p, batch);
-        List<Integer> batches = IntStream.rangeClosed(0, p - 1).boxed().collect(Collectors.toList());
 
-        for (int t = 0; t < steps; t++) {
-            Collections.shuffle(batches, random);  // random choice of the minibatch
-            customThreadPool.submit(() -> batches.subList(0, batchSize).parallelStream().forEach(k -> {
-                int tid = (int) (Thread.currentThread().getId() % threads);
+        boolean writesCheckpoints = checkpointPath != null && isFirstProcess();
+        ExecutorService checkpointWriter = writesCheckpoints ? Executors.newSingleThreadExecutor() : null;
+        Future<?> pendingCheckpoint = null;
+        try {
+            if (processGroup != null) {
+                System.out.println("Connecting process " + processGroup.getRank() + " of " + processGroup.getSize()
+                        + "...");
+                ring = RingAllReduce.connect(processGroup);
+            }
+            if (prefetch) {
+                prefetcher = new BatchPrefetcher(train, sampler, augmentation, batchSize);
+                prefetched = false;
+            }
+            boolean stopped = false;
+            while (completedSteps < steps && !stopped) {
+                step(train, batchSize);
+                completedSteps++;
 
-                forward(data.getTrainVectors().get(k), tid);
-                backpropagate(k, errorFunction, tid);
-                computeGradient(tid);
+                if (validation != null && (completedSteps % validation.getInterval() == 0 || completedSteps == steps)) {
+                    stopped = validate(train);
+                    if ((stopped || completedSteps == steps) && bestWeights != null) {
+                        if (isFirstProcess()) {
+                            System.out.println("Restoring the weights of step " + bestStep + "...");
+                        }
+                        setWeights(bestWeights);
+                    }
+                }
+
+                boolean last = completedSteps == steps || stopped;
+                if (checkpointWriter != null && (completedSteps % checkpointInterval == 0 || last)) {
+                    if (pendingCheckpoint != null) {
+                        pendingCheckpoint.get();  // at most one snapshot waits for the disk
+                    }
+                    Checkpoint checkpoint = createCheckpoint();
+                    pendingCheckpoint = checkpointWriter.submit(() -> {
+                        checkpoint.write(checkpointPath);
+                        return null;
+                    });
+                }
+            }
+            if (pendingCheckpoint != null) {
+                pendingCheckpoint.get();
+            }
+        } finally {
+            if (checkpointWriter != null) {
+                checkpointWriter.shutdown();
+            }
+            if (ring != null) {
+                ring.close();
+                ring = null;
+            }
+            if (prefetcher != null) {
+                prefetcher.close();
+                prefetcher = null;
+            }
+        }
+    }
+
+    private boolean isFirstProcess() {
+        return processGroup == null || processGroup.getRank() == 0;
+    }
 
-            })).get();
-            updateWeights();
+    /**
+     * Hogwild: every worker walks its own shard of the training samples and applies the gradient of each of its
+     * minibatches of batchSize / threads samples straight to the shared weights, without any locks, while
+     * the other workers read and update them. Every worker makes as many updates as there are steps, so the
+     * training sees as many samples as the synchronous one.
+     * <p>
+     * With a bounded staleness, a worker waits before an update while it is more than maxStaleness updates ahead
+     * of the slowest worker.
+     */
+    private void trainAsynchronously() throws Exception {
+        Dataset train = data.getTrain();
+        int[] progress = new int[threads];  // the number of updates of every worker
+        AtomicInteger updates = new AtomicInteger();  // the number of updates of all the workers
+        long[] passNanos = new long[threads];
+        long[] updateNanos = new long[threads];
+        Random[] randoms = new Random[threads];
+        for (int tid = 0; tid < threads; tid++) {
+            randoms[tid] = new Random(random.nextLong());
+        }
+
+        // own threads rather than the fork-join pool, because the workers block each other
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int tid = t;
+                results.add(workers.submit(() -> {
+                    runWorker(train, tid, randoms[tid], progress, updates, passNanos, updateNanos);
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        long nanos = System.nanoTime() - start;
+        completedSteps = steps;
+
+        if (listener != null) {
+            int samples = 0;
+            for (int tid = 0; tid < threads; tid++) {
+                samples = Math.addExact(samples,
+                        Math.multiplyExact(steps, Math.min(shardSamplers[tid].getSize(), getShardBatchSize())));
+            }
+            reportAsynchronousTraining(samples, nanos, passNanos, updateNanos);
         }
     }
 
-    public <T extends Number> void forward(List<Double> input, int tid) {
-        Layer inputLayer = layers.get(0);
+    /**
+     * Reports the whole asynchronous training as a single step over the samples of all the workers, taking the
+     * wall-clock time, with the times of the passes and of the updates averaged over the workers.
+     */
+    private void reportAsynchronousTraining(int samples, long nanos, long[] passNanos, long[] updateNanos)
+            throws IOException {
+        double loss = 0;
+        int correct = 0;
+        long pass = 0;
+        long update = 0;
+        for (int tid = 0; tid < threads; tid++) {
+            loss += stepLosses[tid];
+            correct += stepCorrect[tid];
+            stepLosses[tid] = 0;
+            stepCorrect[tid] = 0;
+            pass += passNanos[tid];
+            update += updateNanos[tid];
+        }
+        loss /= samples;
+        listener.onStep(new StepMetrics(steps, samples, nanos, pass / threads, update / threads, loss, loss,
+                correct / (double) samples));
+    }
 
-        inputLayer.getOutputs()[tid][0] = 1; // bias
-        for (int i = 0; i < inputLayer.getSize(); i++) {  // start the forward pass by evaluating the input neurons
-            inputLayer.getOutputs()[tid][i + 1] = input.get(i);
+    private int getShardBatchSize() {
+        return (Math.min(sampler.getSize(), batch) + threads - 1) / threads;
+    }
+
+    private void runWorker(Dataset train, int tid, Random random, int[] progress, AtomicInteger updates,
+                           long[] passNanos, long[] updateNanos) throws InterruptedException {
+        Sampler shard = shardSamplers[tid];
+        int[] samples = new int[Math.min(shard.getSize(), getShardBatchSize())];
+        try {
+            for (int update = 0; update < steps; update++) {
+                if (maxStaleness >= 0) {
+                    synchronized (progress) {
+                        while (update - min(progress) > maxStaleness) {
+                            progress.wait();
+                        }
+                    }
+                }
+
+                shard.nextBatch(random, samples, samples.length);
+                long passStart = listener != null ? System.nanoTime() : 0;
+                accumulateGradient(train, samples, 0, samples.length, tid);
+                long updateStart = listener != null ? System.nanoTime() : 0;
+                applyGradient(tid, updates.incrementAndGet());
+                if (listener != null) {
+                    passNanos[tid] += updateStart - passStart;
+                    updateNanos[tid] += System.nanoTime() - updateStart;
+                }
+
+                if (maxStaleness >= 0) {
+                    synchronized (progress) {
+                        progress[tid]++;
+                        progress.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (maxStaleness >= 0) {
+                synchronized (progress) {  // nobody waits for a finished or failed worker
+                    progress[tid] = steps;
+                    progress.notifyAll();
+                }
+            }
         }
+    }
+
+    private static int min(int[] values) {
+        int min = values[0];
+        for (int value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    /**
+     * Updates the shared weights by the gradient accumulated by one worker, racing with the other workers on the
+     * weights and on the per-parameter state of the optimizer.
+     *
+     * @param update the number of the update among the updates of all the workers, starting from 1, which is the
+     *               step of the optimizer; the learning rate follows the schedule at the step of the training that
+     *               the updates amount to, every step taking one update of every worker
+     */
+    private void applyGradient(int tid, int update) {
+        double factor = schedule != null ? schedule.getFactor((update + threads - 1) / threads) : 1;
 
         for (int l = 1; l < layers.size(); l++) {
             Layer previousLayer = layers.get(l - 1);
-            Layer layer = layers.get(l);
+            int stride = previousLayer.getSize() + 1;
 
-            for (int j = 0; j < layer.getSize(); j++) {
-                double potential = 0;
+            for (int j = 0; j < layers.get(l).getSize(); j++) {
+                double[] steps;
+                if (precision != Precision.DOUBLE) {
+                    steps = previousLayer.getGradientStagingRows()[tid];
+                    stage(previousLayer.getFloatWeightsStepAccumulator()[tid][j], steps, stride);
+                } else {
+                    steps = previousLayer.getWeightsStepAccumulator()[tid][j];
+                }
+                optimizer.update(update, factor, l - 1, previousLayer.getWeights(), j * stride, steps, stride);
+                if (precision == Precision.FLOAT) {
+                    previousLayer.roundWeights(j);
+                }
+                previousLayer.syncWeights(j);
+            }
+        }
+    }
 
-                for (int i = 0; i < previousLayer.getSize() + 1; i++) {
-                    potential += previousLayer.getWeights()[j][i] * previousLayer.getOutputs()[tid][i];
+    /**
+     * Computes one step. With the prefetch, the minibatch of the next step is requested before the passes over
+     * the current one, unless a checkpoint or a validation follows the step: a checkpoint has to hold the state
+     * of the sampler and of the random generator before the next minibatch.
+     * <p>
+     * Package-private for the benchmarks of src/jmh/java, only {@link #train} calls it in production.
+     */
+    void step(Dataset train, int batchSize) throws Exception {
+        long start = listener != null ? System.nanoTime() : 0;
+        long passStart;
+        if (prefetcher != null) {
+            if (!prefetched) {
+                prefetcher.request(random);
+            }
+            ArrayDataset staged = prefetcher.take();
+            int next = completedSteps + 2;
+            prefetched = next <= steps && (checkpointPath == null || (next - 1) % checkpointInterval != 0)
+                    && (validation == null || (next - 1) % validation.getInterval() != 0);
+            if (prefetched) {
+                prefetcher.request(random);
+            }
+            passStart = listener != null ? System.nanoTime() : 0;
+            forEachPart(batchSize, (tid, from, to) -> accumulateGradient(staged, stagedSamples, from, to, tid));
+            prefetcher.release(staged);
+        } else {
+            sampler.nextBatch(random, minibatch, batchSize);  // random choice of the minibatch
+            passStart = listener != null ? System.nanoTime() : 0;
+            forEachPart(batchSize, (tid, from, to) -> accumulateGradient(train, minibatch, from, to, tid));
+        }
+        long updateStart = listener != null ? System.nanoTime() : 0;
+        updateWeights();
+
+        if (listener != null) {
+            long end = System.nanoTime();
+            reportStep(batchSize, end - start, updateStart - passStart, end - updateStart);
+        }
+    }
+
+    /**
+     * Runs the forward and backward passes of the samples at positions [from, to) of samples and adds their
+     * gradient to the accumulators of the worker.
+     */
+    private void accumulateGradient(Dataset train, int[] samples, int from, int to, int tid) {
+        if (batched) {
+            plans[tid].forward(train, samples, from, to - from);
+            if (listener != null && precision != Precision.DOUBLE) {
+                float[][] outputs = layers.get(layers.size() - 1).getFloatBatchOutputs()[tid];
+                for (int b = from; b < to; b++) {
+                    recordOutputs(outputs[b - from], train.getLabel(samples[b]), tid, stepLosses, stepCorrect);
+                }
+            } else if (listener != null) {
+                double[][] outputs = layers.get(layers.size() - 1).getBatchOutputs()[tid];
+                for (int b = from; b < to; b++) {
+                    recordOutputs(outputs[b - from], train.getLabel(samples[b]), tid, stepLosses, stepCorrect);
                 }
-                layer.getPotentials()[tid][j] = potential;
             }
+            plans[tid].backward(to - from);
+        } else {
+            for (int b = from; b < to; b++) {
+                int k = samples[b];
 
-            double max = Arrays.stream(layer.getPotentials()[tid]).max().orElse(0);
+                forward(train, k, tid);
+                if (listener != null) {
+                    recordOutputs(layers.get(layers.size() - 1).getOutputs()[tid], train.getLabel(k), tid,
+                            stepLosses, stepCorrect);
+                }
+                backpropagate(train.getLabel(k), tid);
+                computeGradient(tid);
+            }
+        }
+    }
 
-            // calculate sum of activation functions applied to potentials (for the output layer with softmax) - optimisation
-            double sum = 0;
-            for (int j = 0; j < layer.getSize(); j++) {
-                sum += layer.getActivationFunction().apply(layer.getPotentials()[tid][j], max);
+    /**
+     * Adds the cross entropy and the correctness of the prediction of one sample to the sums of the worker.
+     *
+     * @param outputs the outputs of the output layer, the bias first
+     */
+    private static void recordOutputs(double[] outputs, int label, int tid, double[] losses, int[] correct) {
+        int prediction = 0;
+        for (int j = 1; j < outputs.length - 1; j++) {
+            if (outputs[j + 1] > outputs[prediction + 1]) {
+                prediction = j;
             }
+        }
+        losses[tid] -= Math.log(Math.max(outputs[label + 1], MIN_PROBABILITY));
+        if (prediction == label) {
+            correct[tid]++;
+        }
+    }
 
-            for (int j = 0; j < layer.getSize(); j++) {  // calculate outputs for each neuron in the layer
-                layer.getOutputs()[tid][j + 1] = layer.getActivationFunction()
-                        .computeOutput(sum, layer.getPotentials()[tid][j], max);
+    private static void recordOutputs(float[] outputs, int label, int tid, double[] losses, int[] correct) {
+        int prediction = 0;
+        for (int j = 1; j < outputs.length - 1; j++) {
+            if (outputs[j + 1] > outputs[prediction + 1]) {
+                prediction = j;
             }
         }
+        losses[tid] -= Math.log(Math.max(outputs[label + 1], MIN_PROBABILITY));
+        if (prediction == label) {
+            correct[tid]++;
+        }
     }
 
-    private void backpropagate(int k, ErrorFunction errorFunction, int tid) {
+    /**
+     * Evaluates the held out training vectors by the per-sample forward pass of all the workers, or by their
+     * execution plans in the float precision modes, and counts the validations without an improvement of the loss. In a process group, every process evaluates its part
+     * of the vectors and all of them reach the same decision from the summed results.
+     *
+     * @return whether the training should stop early
+     */
+    private boolean validate(Dataset train) throws Exception {
+        int[] samples = validation.getSamples();
+        int first = processGroup != null ? processGroup.getRank() * samples.length / processGroup.getSize() : 0;
+        int last = processGroup != null ? (processGroup.getRank() + 1) * samples.length / processGroup.getSize()
+                : samples.length;
         Layer outputLayer = layers.get(layers.size() - 1);
-        for (int j = 0; j < outputLayer.getSize(); j++) {  // start with the output layer
-            double y = outputLayer.getOutputs()[tid][j + 1];
-            double d = data.getTrainLabels().get(k).get(j);
+        forEachPart(last - first, (tid, from, to) -> {
+            if (precision != Precision.DOUBLE) {
+                // no double copies of the weights for the per-sample pass, the plan runs in chunks of its rows
+                float[][] outputs = outputLayer.getFloatBatchOutputs()[tid];
+                for (int s = first + from; s < first + to; s += outputs.length) {
+                    int rows = Math.min(outputs.length, first + to - s);
+                    plans[tid].forward(train, samples, s, rows);
+                    for (int b = 0; b < rows; b++) {
+                        recordOutputs(outputs[b], train.getLabel(samples[s + b]), tid, validationLosses,
+                                validationCorrect);
+                    }
+                }
+                return;
+            }
+            for (int s = first + from; s < first + to; s++) {
+                forward(train, samples[s], tid);
+                recordOutputs(outputLayer.getOutputs()[tid], train.getLabel(samples[s]), tid, validationLosses,
+                        validationCorrect);
+            }
+        });
 
-            // compute the partial derivative of the errorFunction with respect to the outputs
-            outputLayer.getChainRuleTermWithOutput()[tid][j] = errorFunction.calculatePartialDerivative(y, d);
+        double loss = 0;
+        int correct = 0;
+        for (int tid = 0; tid < threads; tid++) {
+            loss += validationLosses[tid];
+            correct += validationCorrect[tid];
+            validationLosses[tid] = 0;
+            validationCorrect[tid] = 0;
+        }
+        if (ring != null) {
+            double[] totals = {loss, correct};
+            ring.allReduce(totals);
+            loss = totals[0];
+            correct = (int) totals[1];
+        }
+        loss /= samples.length;
+        validationLoss = loss;
+        validationAccuracy = correct / (double) samples.length;
+        if (isFirstProcess()) {
+            System.out.printf("Step %d: validation loss %.4f, accuracy %.4f%n", completedSteps, loss,
+                    validationAccuracy);
         }
 
-        // compute the partial derivative of the errorFunction with respect to the outputs in the hidden layers
-        for (int l = layers.size() - 2; l >= 1; l--) {
-            Layer nextLayer = layers.get(l + 1);
+        if (validation.getPatience() == 0) {
+            return false;
+        }
+        if (loss < bestLoss - validation.getMinDelta()) {
+            bestLoss = loss;
+            bestStep = completedSteps;
+            bestWeights = copyWeights(bestWeights);
+            validationsWithoutImprovement = 0;
+            return false;
+        }
+        validationsWithoutImprovement++;
+        if (validationsWithoutImprovement >= validation.getPatience()) {
+            if (isFirstProcess()) {
+                System.out.println("Stopping early, no improvement in " + validationsWithoutImprovement
+                        + " validations...");
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the weights of all the layers into target, allocated if null.
+     */
+    private double[][] copyWeights(double[][] target) {
+        if (target == null) {
+            target = new double[layers.size() - 1][];
+        }
+        for (int l = 0; l < layers.size() - 1; l++) {
+            double[] weights = layers.get(l).getWeights();
+            if (target[l] == null) {
+                target[l] = weights.clone();
+            } else {
+                System.arraycopy(weights, 0, target[l], 0, weights.length);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Sets the weights of all the layers, including their copies.
+     */
+    private void setWeights(double[][] weights) {
+        for (int l = 0; l < layers.size() - 1; l++) {
             Layer layer = layers.get(l);
+            System.arraycopy(weights[l], 0, layer.getWeights(), 0, layer.getWeights().length);
+            for (int r = 0; r < layer.getNextLayerSize(); r++) {
+                layer.syncWeights(r);
+            }
+        }
+    }
 
-            double max = Arrays.stream(nextLayer.getPotentials()[tid]).max().orElse(0);
-            double sum = IntStream.range(0, nextLayer.getSize()).mapToDouble(j ->
-                    nextLayer.getActivationFunction().apply(nextLayer.getPotentials()[tid][j], max)).sum();
+    private void reportStep(int batchSize, long stepNanos, long passNanos, long updateNanos) throws IOException {
+        double loss = 0;
+        int correct = 0;
+        for (int tid = 0; tid < threads; tid++) {
+            loss += stepLosses[tid];
+            correct += stepCorrect[tid];
+            stepLosses[tid] = 0;
+            stepCorrect[tid] = 0;
+        }
+        loss /= batchSize;
+        runningLoss = Double.isNaN(runningLoss) ? loss : LOSS_SMOOTHING * runningLoss + (1 - LOSS_SMOOTHING) * loss;
 
-            // sum of activation functions applied to potentials - optimisation
+        listener.onStep(new StepMetrics(completedSteps + 1, batchSize, stepNanos, passNanos, updateNanos, loss,
+                runningLoss, correct / (double) batchSize));
+    }
 
-            for (int j = 0; j < layer.getSize(); j++) {
-                layer.getChainRuleTermWithOutput()[tid][j] = 0;
-            }
-            for (int r = 0; r < nextLayer.getSize(); r++) {
-                double term1 = nextLayer.getChainRuleTermWithOutput()[tid][r];
-                double term2 = nextLayer.getActivationFunction().computeDerivative(sum, nextLayer.getPotentials()[tid][r], max);
-                double t12 = term1 * term2;
-                for (int j = 0; j < layer.getSize(); j++) {
-                    double term3 = layer.getWeights()[r][j + 1];
-                    layer.getChainRuleTermWithOutput()[tid][j] += t12 * term3;
-                }
-            }
+    /**
+     * Splits the positions [0, count) statically into one contiguous part per worker and processes the parts
+     * in parallel. A task may use the scratch buffers with the index of its part.
+     * <p>
+     * Every part is processed by exactly one task, so no two tasks share scratch buffers, and which samples
+     * contribute to which gradient accumulator depends only on the number of threads. Together with the fixed
+     * order of the reduction in {@link #updateWeights} this makes the training reproducible for a fixed seed.
+     */
+    private void forEachPart(int count, PartTask task) throws Exception {
+        customThreadPool.submit(() -> IntStream.range(0, threads).parallel().forEach(part ->
+                task.run(part, part * count / threads, (part + 1) * count / threads))).get();
+    }
+
+    private interface PartTask {
+        void run(int tid, int from, int to);
+    }
+
+    /**
+     * Computes the partial derivatives of the error with respect to the outputs of the output layer, or directly
+     * with respect to its potentials if the softmax and the cross entropy are fused.
+     *
+     * @param outputs the outputs of the output layer, the bias first
+     */
+    private void computeOutputTerms(double[] outputs, double[] terms, int label) {
+        for (int j = 0; j < terms.length; j++) {
+            double y = outputs[j + 1];
+            double d = j == label ? 1 : 0;
+
+            // for the softmax followed by the cross entropy, dE/dy_j * dy_j/dpotential_j
+            // = (y_j - d_j) / (y_j (1 - y_j)) * y_j (1 - y_j) = y_j - d_j, without dividing by y_j (1 - y_j)
+            terms[j] = fusedOutput ? y - d : errorFunction.calculatePartialDerivative(y, d);
         }
     }
 
-    private void computeGradient(int tid) {
+    public void forward(Dataset dataset, int k, int tid) {
+        Layer inputLayer = layers.get(0);
+
+        inputLayer.getOutputs()[tid][0] = 1; // bias
+        dataset.copyVector(k, inputLayer.getOutputs()[tid], 1);  // start the forward pass by evaluating the input neurons
+
         for (int l = 1; l < layers.size(); l++) {
             Layer previousLayer = layers.get(l - 1);
             Layer layer = layers.get(l);
+            double[] potentials = layer.getPotentials()[tid];
+            double[] previousOutputs = previousLayer.getOutputs()[tid];
 
-            double max = Arrays.stream(layer.getPotentials()[tid]).max().orElse(0);
-            double sum = IntStream.range(0, layer.getSize()).mapToDouble(j ->
-                    layer.getActivationFunction().apply(layer.getPotentials()[tid][j], max)).sum();
+            // potential_j = sum_i y_i * w_ji, accumulated one input neuron i at a time along a row of w^T
+            Arrays.fill(potentials, 0);
+            for (int i = 0; i < previousLayer.getSize() + 1; i++) {
+                double output = previousOutputs[i];
+                if (output == 0) {
+                    continue;
+                }
+                kernels.axpy(output, previousLayer.getTransposedWeights()[i], potentials, 0, layer.getSize());
+            }
 
+            // calculate outputs for each neuron in the layer
+            layer.getActivationFunction().computeOutputs(potentials, layer.getOutputs()[tid], 1, layer.getSize());
+        }
+    }
 
-            for (int j = 0; j < layer.getSize(); j++) {
-                double term1 = layer.getChainRuleTermWithOutput()[tid][j];
-                double term2 = layer.getActivationFunction().computeDerivative(sum, layer.getPotentials()[tid][j], max);
-                double t12 = term1 * term2;
+    /**
+     * Computes the partial derivatives of the error with respect to the potentials of all the layers,
+     * layer by layer from the output one. Package-private for the benchmarks of src/jmh/java.
+     */
+    void backpropagate(int label, int tid) {
+        Layer outputLayer = layers.get(layers.size() - 1);
+        double[] outputTerms = outputLayer.getChainRuleTermWithOutput()[tid];
+        computeOutputTerms(outputLayer.getOutputs()[tid], outputTerms, label);
+        if (!fusedOutput) {
+            outputLayer.getActivationFunction().multiplyByDerivative(outputLayer.getOutputs()[tid], 1, outputTerms,
+                    outputLayer.getSize());
+        }
 
-                for (int i = 0; i < previousLayer.getSize() + 1; i++) {
-                    double term3 = previousLayer.getOutputs()[tid][i];
-                    double res = t12 * term3;
+        for (int l = layers.size() - 2; l >= 1; l--) {
+            Layer nextLayer = layers.get(l + 1);
+            Layer layer = layers.get(l);
+            double[] nextTerms = nextLayer.getChainRuleTermWithOutput()[tid];
+            double[] terms = layer.getChainRuleTermWithOutput()[tid];
 
-                    previousLayer.getWeightsStepAccumulator()[tid][j][i] += res; // accumulate the partial derivatives
+            // partial derivatives with respect to the outputs, then with respect to the potentials
+            Arrays.fill(terms, 0);
+            for (int r = 0; r < nextLayer.getSize(); r++) {
+                double t12 = nextTerms[r];
+                if (t12 == 0) {
+                    continue;
                 }
+                kernels.axpy(t12, layer.getWeightsWithoutBias()[r], terms, 0, layer.getSize());
             }
+            layer.getActivationFunction().multiplyByDerivative(layer.getOutputs()[tid], 1, terms, layer.getSize());
         }
     }
 
-    private void updateWeights() {  // update the weights + optimize with momentum and RMSProp (Adam)
-        double delta = 1e-8;  // smoothing term to avoid division by zero
-
+    /**
+     * Adds the gradient of the sample of the per-sample passes to the accumulators of the worker.
+     * Package-private for the benchmarks of src/jmh/java.
+     */
+    void computeGradient(int tid) {
         for (int l = 1; l < layers.size(); l++) {
             Layer previousLayer = layers.get(l - 1);
             Layer layer = layers.get(l);
+            double[] terms = layer.getChainRuleTermWithOutput()[tid];
+            double[] previousOutputs = previousLayer.getOutputs()[tid];
 
             for (int j = 0; j < layer.getSize(); j++) {
-                for (int i = 0; i < previousLayer.getSize() + 1; i++) {
-                    // total sum of weight steps for each weight
-                    double step = 0;
-                    for (int tid = 0; tid < threads; tid++) {
-                        step += previousLayer.getWeightsStepAccumulator()[tid][j][i];
+                double t12 = terms[j];
+                if (t12 == 0) {
+                    continue;
+                }
+
+                // accumulate the partial derivatives
+                kernels.axpy(t12, previousOutputs, previousLayer.getWeightsStepAccumulator()[tid][j], 0,
+                        previousLayer.getSize() + 1);
+            }
+        }
+    }
+
+    /**
+     * Updates the weights by the step of the optimizer. In a process group, the gradients of the layers are first
+     * reduced over the workers into one buffer, which is summed over the processes by the ring all-reduce, and
+     * the rows of the weights are updated from the sums. Package-private for the benchmarks of src/jmh/java.
+     */
+    void updateWeights() throws Exception {
+        optimizer.nextStep(completedSteps + 1);
+        if (schedule != null) {
+            optimizer.setLearningRateFactor(schedule.getFactor(completedSteps + 1));
+        }
+
+        if (ring != null) {
+            int offset = 0;
+            for (int l = 1; l < layers.size(); l++) {
+                Layer previousLayer = layers.get(l - 1);
+                int stride = previousLayer.getSize() + 1;
+                int layerOffset = offset;
+                forEachPart(layers.get(l).getSize(), (part, from, to) -> {
+                    for (int j = from; j < to; j++) {
+                        double[] steps = reduceGradient(previousLayer, j, part);
+                        System.arraycopy(steps, 0, gradient, layerOffset + j * stride, stride);
                     }
+                });
+                offset += previousLayer.getWeights().length;
+            }
 
-                    // r_ji^(t - 1)
-                    double rmsProp = previousLayer.getRmsprop()[j][i];
+            ring.allReduce(gradient);
 
-                    // r_ji^(t)
-                    double currentRmsProp = rmsAlpha * rmsProp + (1 - rmsAlpha) * step * step;
+            offset = 0;
+            for (int l = 1; l < layers.size(); l++) {
+                Layer previousLayer = layers.get(l - 1);
+                int layer = l;
+                int stride = previousLayer.getSize() + 1;
+                int layerOffset = offset;
+                forEachPart(layers.get(l).getSize(), (part, from, to) -> {
+                    for (int j = from; j < to; j++) {
+                        double[] steps = precision != Precision.DOUBLE ? previousLayer.getGradientStagingRows()[part]
+                                : previousLayer.getWeightsStepAccumulator()[0][j];
+                        System.arraycopy(gradient, layerOffset + j * stride, steps, 0, stride);
+                        updateRow(layer, j, steps);
+                    }
+                });
+                offset += previousLayer.getWeights().length;
+            }
+            return;
+        }
 
-                    double actualStep = -(learningRate / Math.sqrt(currentRmsProp + delta)) * step;
-                    double previousStep = previousLayer.getMomentum()[j][i];
+        for (int l = 1; l < layers.size(); l++) {
+            Layer previousLayer = layers.get(l - 1);
+            int layer = l;
 
-                    double momentumBalancedStep = actualStep * (1 - momentumAlpha) + momentumAlpha * previousStep;
+            // the rows w_j* are independent, so every worker reduces and updates its own range of them
+            forEachPart(layers.get(l).getSize(), (part, from, to) -> {
+                for (int j = from; j < to; j++) {
+                    updateRow(layer, j, reduceGradient(previousLayer, j, part));
+                }
+            });
+        }
+    }
 
-                    previousLayer.getWeights()[j][i] += momentumBalancedStep;
-                    previousLayer.getRmsprop()[j][i] = currentRmsProp;
-                    previousLayer.getMomentum()[j][i] = momentumBalancedStep;
+    /**
+     * Sums the weight steps of the row w_j* into the accumulator of the first worker.
+     *
+     * @param part the worker reducing the row, whose staging row receives the sums in the float precision modes
+     * @return the double row holding the sums
+     */
+    private double[] reduceGradient(Layer previousLayer, int j, int part) {
+        double[][][] accumulator = previousLayer.getWeightsStepAccumulator();
+        float[][][] floatAccumulator = previousLayer.getFloatWeightsStepAccumulator();
+        int stride = previousLayer.getSize() + 1;
 
-                    for (int tid = 0; tid < threads; tid++) {
-                        previousLayer.getWeightsStepAccumulator()[tid][j][i] = 0;
-                    }
+        // total sum of weight steps for each weight: a pairwise tree reduction of the accumulators
+        // into the one of the first thread, each accumulator is read and cleared exactly once
+        if (floatAccumulator != null) {
+            for (int distance = 1; distance < threads; distance *= 2) {
+                for (int tid = 0; tid + distance < threads; tid += 2 * distance) {
+                    kernels.addAndClear(floatAccumulator[tid + distance][j], floatAccumulator[tid][j], stride);
                 }
             }
+
+            double[] steps = previousLayer.getGradientStagingRows()[part];
+            stage(floatAccumulator[0][j], steps, stride);
+            return steps;
+        }
+        for (int distance = 1; distance < threads; distance *= 2) {
+            for (int tid = 0; tid + distance < threads; tid += 2 * distance) {
+                kernels.addAndClear(accumulator[tid + distance][j], accumulator[tid][j], stride);
+            }
         }
+        return accumulator[0][j];
     }
 
+    /**
+     * Moves float weight steps into a double staging row for the optimizer, which works in double.
+     */
+    private static void stage(float[] floatSteps, double[] steps, int length) {
+        for (int i = 0; i < length; i++) {
+            steps[i] = floatSteps[i];
+            floatSteps[i] = 0;
+        }
+    }
 
-    public void evaluate(String fileName, boolean trainData) throws Exception {
-        System.out.println("==============");
+    /**
+     * Updates the row w_j* of the l-th layer by the summed weight steps.
+     */
+    private void updateRow(int l, int j, double[] steps) {
+        Layer previousLayer = layers.get(l - 1);
+        int stride = previousLayer.getSize() + 1;
+        optimizer.update(l - 1, previousLayer.getWeights(), j * stride, steps, stride);
+        if (precision == Precision.FLOAT) {
+            previousLayer.roundWeights(j);
+        }
+        previousLayer.syncWeights(j);
+    }
+
+    /**
+     * Takes a snapshot of the network, which stays valid while the training goes on.
+     */
+    public Checkpoint createCheckpoint() throws IOException {
+        int[] sizes = new int[layers.size()];
+        String[] activationFunctions = new String[layers.size()];
+        double[][] activationParameters = new double[layers.size()][];
+        double[][] weights = new double[layers.size() - 1][];
+        for (int l = 0; l < layers.size(); l++) {
+            sizes[l] = layers.get(l).getSize();
+            activationFunctions[l] = layers.get(l).getActivationFunction().getClass().getName();
+            activationParameters[l] = layers.get(l).getActivationFunction().getParameters();
+            if (l < layers.size() - 1) {
+                weights[l] = layers.get(l).getWeights().clone();
+            }
+        }
+
+        double[][] optimizerState = optimizer.getState().clone();
+        for (int s = 0; s < optimizerState.length; s++) {
+            optimizerState[s] = optimizerState[s].clone();
+        }
+
+        ByteArrayOutputStream randomBytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(randomBytes)) {
+            out.writeObject(random);
+        }
+
+        double[][] savedBestWeights = null;
+        if (bestWeights != null) {  // updated in place by the following validations
+            savedBestWeights = new double[bestWeights.length][];
+            for (int l = 0; l < bestWeights.length; l++) {
+                savedBestWeights[l] = bestWeights[l].clone();
+            }
+        }
+
+        return new Checkpoint(sizes, activationFunctions, activationParameters, optimizer.getClass().getName(),
+                completedSteps, randomBytes.toByteArray(), sampler.getState(), weights, optimizerState, bestLoss,
+                bestStep, validationsWithoutImprovement, savedBestWeights);
+    }
+
+    /**
+     * Restores the complete state of the network, so that {@link #train} continues where the checkpoint was taken.
+     */
+    public void restore(Checkpoint checkpoint) throws IOException, ClassNotFoundException {
+        if (processGroup != null) {
+            // the checkpoint holds the sampler and the random generator of the first process only
+            throw new IllegalStateException("Training of a process group cannot be resumed!");
+        }
+        restoreWeights(checkpoint);
+
+        if (!checkpoint.getOptimizer().equals(optimizer.getClass().getName())) {
+            throw new IllegalStateException("Checkpoint was trained by " + checkpoint.getOptimizer() + "!");
+        }
+        double[][] state = optimizer.getState();
+        double[][] savedState = checkpoint.getOptimizerState();
+        if (state.length != savedState.length) {
+            throw new IllegalStateException("Checkpoint has a different optimizer state!");
+        }
+        for (int s = 0; s < state.length; s++) {
+            if (state[s].length != savedState[s].length) {
+                throw new IllegalStateException("Checkpoint has a different optimizer state!");
+            }
+            System.arraycopy(savedState[s], 0, state[s], 0, state[s].length);
+        }
+
+        sampler.setState(checkpoint.getSamplerState());
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(checkpoint.getRandom()))) {
+            random = (Random) in.readObject();
+        }
+        completedSteps = checkpoint.getCompletedSteps();
+
+        bestLoss = checkpoint.getBestLoss();
+        bestStep = checkpoint.getBestStep();
+        bestWeights = null;
+        if (checkpoint.getBestWeights() != null) {  // the checkpoint may be restored again, see SuccessiveHalving
+            bestWeights = new double[checkpoint.getBestWeights().length][];
+            for (int l = 0; l < bestWeights.length; l++) {
+                bestWeights[l] = checkpoint.getBestWeights()[l].clone();
+            }
+        }
+        validationsWithoutImprovement = checkpoint.getValidationsWithoutImprovement();
+    }
+
+    /**
+     * Restores only the weights, which is enough for inference. The layers of the network must have the sizes and
+     * the activation functions, including their parameters, of the checkpoint.
+     */
+    public void restoreWeights(Checkpoint checkpoint) {
+        int[] sizes = checkpoint.getSizes();
+        if (sizes.length != layers.size()) {
+            throw new IllegalStateException("Checkpoint has " + sizes.length + " layers instead of " + layers.size()
+                    + "!");
+        }
+        for (int l = 0; l < layers.size(); l++) {
+            Layer layer = layers.get(l);
+            ActivationFunction activationFunction = layer.getActivationFunction();
+            if (sizes[l] != layer.getSize()
+                    || !checkpoint.getActivationFunctions()[l].equals(activationFunction.getClass().getName())
+                    || !Arrays.equals(checkpoint.getActivationParameters()[l], activationFunction.getParameters())) {
+                throw new IllegalStateException("Layer " + l + " of the checkpoint does not match the network!");
+            }
+        }
+
+        setWeights(checkpoint.getWeights());
+    }
+
+    /**
+     * @return the loss of the last validation, NaN before the first one
+     */
+    public double getValidationLoss() {
+        return validationLoss;
+    }
 
-        List<List<Double>> dataset = trainData ? data.getTrainVectors() : data.getTestVectors();
+    /**
+     * @return the accuracy of the last validation, NaN before the first one
+     */
+    public double getValidationAccuracy() {
+        return validationAccuracy;
+    }
 
+    public int getCompletedSteps() {
+        return completedSteps;
+    }
+
+    /**
+     * Shuts down the threads of the workers, after which the network can no longer be trained or evaluated.
+     */
+    @Override
+    public void close() {
+        customThreadPool.shutdown();
+    }
+
+    public void evaluate(String fileName, boolean trainData) throws Exception {
+        Dataset dataset = trainData ? data.getTrain() : data.getTest();
         File csvOutputFile = new File(fileName);
-        int p = dataset.size();
-        int[] results = new int[p];
-
-        customThreadPool.submit(() -> {
-            IntStream.range(0, p).parallel().forEach(k -> {
-                int tid = threadId.get();
-                forward(dataset.get(k), tid);
-                Layer outputLayer = layers.get(layers.size() - 1);
-                double max = -Double.MAX_VALUE;
-                int result = 0;
-                for (int j = 0; j < outputLayer.getSize(); j++) {
-                    double predicted = outputLayer.getOutputs()[tid][j + 1];
-                    if (predicted > max) {
-                        max = predicted;
-                        result = j;
-                    }
-                }
-                results[k] = result;
-            });
-        }).get();
+        int[] results = predict(dataset);
 
         try (PrintWriter pw = new PrintWriter(csvOutputFile)) {
             for (int result : results) {
@@ -272,4 +1071,40 @@ public class NeuralNetwork {
             }
         }
     }
+
+    /**
+     * Classifies every vector of the dataset with an {@link InferenceModel} of the current weights.
+     *
+     * @return the index of the most probable class of each vector
+     */
+    public int[] predict(Dataset dataset) throws Exception {
+        InferenceModel model = createInferenceModel();
+        int[] results = new int[dataset.getSize()];
+
+        forEachPart(dataset.getSize(), (part, from, to) -> {
+            InferenceModel.Scratch scratch = model.newScratch();
+            for (int k = from; k < to; k++) {
+                results[k] = model.predict(dataset, k, scratch);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Copies the current weights into a read-only model, which is independent of any further training and runs
+     * with the kernels of the network.
+     */
+    public InferenceModel createInferenceModel() {
+        int[] sizes = new int[layers.size()];
+        ActivationFunction[] activationFunctions = new ActivationFunction[layers.size()];
+        double[][] weights = new double[layers.size() - 1][];
+        for (int l = 0; l < layers.size(); l++) {
+            sizes[l] = layers.get(l).getSize();
+            activationFunctions[l] = layers.get(l).getActivationFunction();
+            if (l < layers.size() - 1) {
+                weights[l] = layers.get(l).getWeights();
+            }
+        }
+        return new InferenceModel(sizes, activationFunctions, weights, kernels);
+    }
 }
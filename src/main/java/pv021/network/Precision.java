@@ -0,0 +1,24 @@
+package pv021.network;
+
+/**
+ * The floating point precision of training.
+ * <p>
+ * The float modes run the batched forward and backward passes on float copies of the weights and on float
+ * activations and gradients, which halves the memory traffic and doubles the SIMD width of the hot loops.
+ * The gradients are summed over the threads in float and handed to the optimizer in double.
+ */
+public enum Precision {
+    /**
+     * Everything in double.
+     */
+    DOUBLE,
+    /**
+     * Float passes, the weights are rounded to float after every update. The state of the optimizer stays
+     * in double.
+     */
+    FLOAT,
+    /**
+     * Float passes, the optimizer updates double master weights, which are rounded only into the float copies.
+     */
+    MIXED
+}
@@ -0,0 +1,202 @@
+package pv021.network;
+
+import pv021.data.CsvChunkReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Classifies a CSV file of input vectors of any size with a fixed amount of memory.
+ * <p>
+ * The vectors are read a chunk at a time, every chunk is split into one batch per thread scored by
+ * {@link InferenceModel#predict(InferenceModel.BatchScratch, int, int[], int)}, and the predictions are written
+ * in the input order. Reading of the next chunk and writing of the previous one run in their own threads while
+ * a chunk is scored, so three chunks rotate through the stages.
+ * <p>
+ * Every line of the output holds the predicted class, followed by the class and the output value (e.g. the
+ * probability) of the topK largest outputs when topK is positive. The inputs are normalized like the ones
+ * of {@link pv021.data.Data}, with the mean and standard deviation of the whole input file, which takes
+ * an extra streaming pass over the file.
+ */
+public class PredictionPipeline {
+    private static final int CHUNKS = 3;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private final InferenceModel model;
+    private final int threads;
+    private final int chunkRows;
+    private final int topK;
+
+    public PredictionPipeline(InferenceModel model, int threads, int chunkRows, int topK) {
+        if (topK < 0 || topK > model.getOutputSize()) {
+            throw new IllegalArgumentException("Cannot report " + topK + " of " + model.getOutputSize()
+                    + " classes!");
+        }
+        this.model = model;
+        this.threads = threads;
+        this.chunkRows = chunkRows;
+        this.topK = topK;
+    }
+
+    private class Chunk {
+        private final float[] vectors = new float[chunkRows * model.getInputSize()];
+        private final int[] predictions = new int[chunkRows];
+        private final int[] topClasses = new int[chunkRows * topK];
+        private final double[] topOutputs = new double[chunkRows * topK];
+        private int rows;
+    }
+
+    /**
+     * Classifies the vectors in inputPath and writes the predictions into outputPath.
+     *
+     * @return the number of classified vectors
+     */
+    public long run(Path inputPath, Path outputPath) throws Exception {
+        int inputSize = model.getInputSize();
+        double mean;
+        double standardDeviation;
+        try (CsvChunkReader reader = new CsvChunkReader(inputPath, inputSize)) {
+            float[] vectors = new float[chunkRows * inputSize];
+            while (reader.read(vectors, chunkRows) > 0) {
+                // only the statistics are needed
+            }
+            mean = reader.getMean();
+            standardDeviation = reader.getStandardDeviation();
+        }
+
+        Chunk[] chunks = new Chunk[CHUNKS];
+        for (int c = 0; c < CHUNKS; c++) {
+            chunks[c] = new Chunk();
+        }
+        InferenceModel.BatchScratch[] scratches = new InferenceModel.BatchScratch[threads];
+        for (int part = 0; part < threads; part++) {
+            scratches[part] = model.newBatchScratch((chunkRows + threads - 1) / threads);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ExecutorService readerThread = Executors.newSingleThreadExecutor();
+        ExecutorService writerThread = Executors.newSingleThreadExecutor();
+        long count = 0;
+        try (CsvChunkReader reader = new CsvChunkReader(inputPath, inputSize);
+             FileChannel output = FileChannel.open(outputPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+            StringBuilder line = new StringBuilder();
+
+            Future<Chunk> nextChunk = readerThread.submit(() -> read(reader, chunks[0]));
+            Future<?> pendingWrite = null;
+            for (int c = 1; ; c++) {
+                Chunk chunk = nextChunk.get();
+                if (chunk.rows == 0) {
+                    break;
+                }
+                // the chunk read now was written two iterations ago, which has been waited for below
+                Chunk next = chunks[c % CHUNKS];
+                nextChunk = readerThread.submit(() -> read(reader, next));
+
+                score(pool, chunk, scratches, mean, standardDeviation);
+                count += chunk.rows;
+
+                if (pendingWrite != null) {
+                    pendingWrite.get();
+                }
+                pendingWrite = writerThread.submit(() -> {
+                    write(chunk, output, buffer, line);
+                    return null;
+                });
+            }
+            if (pendingWrite != null) {
+                pendingWrite.get();
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+        } finally {
+            readerThread.shutdownNow();
+            writerThread.shutdownNow();
+            pool.shutdown();
+        }
+        return count;
+    }
+
+    private static Chunk read(CsvChunkReader reader, Chunk chunk) throws IOException {
+        chunk.rows = reader.read(chunk.vectors, chunk.predictions.length);
+        return chunk;
+    }
+
+    private void score(ForkJoinPool pool, Chunk chunk, InferenceModel.BatchScratch[] scratches, double mean,
+                       double standardDeviation) throws Exception {
+        int inputSize = model.getInputSize();
+        int outputSize = model.getOutputSize();
+        int rows = chunk.rows;
+        pool.submit(() -> IntStream.range(0, threads).parallel().forEach(part -> {
+            int from = part * rows / threads;
+            int to = (part + 1) * rows / threads;
+            InferenceModel.BatchScratch scratch = scratches[part];
+            for (int k = from; k < to; k++) {
+                double[] input = scratch.getInput(k - from);
+                int offset = k * inputSize;
+                for (int i = 0; i < inputSize; i++) {
+                    // the rounding of the normalized values of MappedDataset
+                    input[i + 1] = (float) ((chunk.vectors[offset + i] - mean) / standardDeviation);
+                }
+            }
+            model.predict(scratch, to - from, chunk.predictions, from);
+
+            for (int k = from; k < to; k++) {
+                double[] outputs = scratch.getOutput(k - from);
+                for (int t = 0; t < topK; t++) {
+                    int best = -1;
+                    for (int j = 0; j < outputSize; j++) {
+                        if (!isSelected(chunk, k, t, j) && (best < 0 || outputs[j + 1] > outputs[best + 1])) {
+                            best = j;
+                        }
+                    }
+                    chunk.topClasses[k * topK + t] = best;
+                    chunk.topOutputs[k * topK + t] = outputs[best + 1];
+                }
+            }
+        })).get();
+    }
+
+    private boolean isSelected(Chunk chunk, int k, int count, int j) {
+        for (int t = 0; t < count; t++) {
+            if (chunk.topClasses[k * topK + t] == j) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void write(Chunk chunk, FileChannel output, ByteBuffer buffer, StringBuilder line) throws IOException {
+        for (int k = 0; k < chunk.rows; k++) {
+            line.setLength(0);
+            line.append(chunk.predictions[k]);
+            for (int t = 0; t < topK; t++) {
+                line.append(',').append(chunk.topClasses[k * topK + t])
+                        .append(',').append(chunk.topOutputs[k * topK + t]);
+            }
+            line.append('\n');
+
+            if (buffer.remaining() < line.length()) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    output.write(buffer);
+                }
+                buffer.clear();
+            }
+            for (int c = 0; c < line.length(); c++) {
+                buffer.put((byte) line.charAt(c));  // the line is ASCII only
+            }
+        }
+    }
+}
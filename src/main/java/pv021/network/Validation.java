@@ -0,0 +1,42 @@
+package pv021.network;
+
+/**
+ * Settings of the validation on training vectors held out from the training, and of the early stopping by the
+ * validation loss.
+ */
+public final class Validation {
+    private final int[] samples;
+    private final int interval;
+    private final int patience;
+    private final double minDelta;
+
+    /**
+     * @param samples  the indices of the held out training vectors
+     * @param interval the number of steps between validations
+     * @param patience the number of validations without an improvement after which the training stops,
+     *                 0 to never stop early
+     * @param minDelta the decrease of the validation loss counted as an improvement
+     */
+    public Validation(int[] samples, int interval, int patience, double minDelta) {
+        this.samples = samples;
+        this.interval = interval;
+        this.patience = patience;
+        this.minDelta = minDelta;
+    }
+
+    public int[] getSamples() {
+        return samples;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public int getPatience() {
+        return patience;
+    }
+
+    public double getMinDelta() {
+        return minDelta;
+    }
+}
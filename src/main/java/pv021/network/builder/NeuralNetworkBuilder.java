@@ -2,11 +2,23 @@ package pv021.network.builder;
 
 import pv021.function.activation.ActivationFunction;
 import pv021.function.activation.IdentityFunction;
+import pv021.data.Augmentation;
 import pv021.data.Data;
+import pv021.data.Sampling;
+import pv021.distributed.ProcessGroup;
+import pv021.metrics.TrainingListener;
 import pv021.network.NeuralNetwork;
+import pv021.network.Precision;
+import pv021.network.Validation;
+import pv021.optimizer.LearningRateSchedule;
+import pv021.optimizer.MomentumRmsProp;
+import pv021.optimizer.Optimizer;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 /**
  * A builder class for constructing a NeuralNetwork.
@@ -21,6 +33,24 @@ public class NeuralNetworkBuilder {
     private final double momentumAlpha;
     private final double rmsAlpha;
     private final int threads;
+    private boolean batched;
+    private boolean vectorKernels;
+    private Optimizer optimizer;
+    private LearningRateSchedule schedule;
+    private Precision precision = Precision.DOUBLE;
+    private Path checkpointPath;
+    private int checkpointInterval;
+    private TrainingListener listener;
+    private Sampling sampling = Sampling.SHUFFLE;
+    private boolean asynchronous;
+    private int maxStaleness = -1;
+    private ProcessGroup processGroup;
+    private boolean prefetch;
+    private Augmentation augmentation;
+    private double validationFraction;
+    private int validationInterval;
+    private int patience;
+    private double minDelta;
 
     public NeuralNetworkBuilder(Data data, double learningRate, int steps, int batchSize, double momentumAlpha,
                                 double rmsAlpha, long seed, int threads) {
@@ -30,7 +60,7 @@ public class NeuralNetworkBuilder {
         this.learningRate = learningRate;
         this.batchSkip = batchSize;
         this.momentumAlpha = momentumAlpha;
-        this.layers.add(new LayerTemplate(data.getTestVectors().get(0).size(), new IdentityFunction()));
+        this.layers.add(new LayerTemplate(data.getDimension(), new IdentityFunction()));
         this.seed = seed;
         this.rmsAlpha=rmsAlpha;
         this.threads = threads;
@@ -41,10 +71,204 @@ public class NeuralNetworkBuilder {
         return this;
     }
 
+    /**
+     * Enables the batched execution mode, which computes each thread's part of the minibatch
+     * as matrix-matrix products instead of one matrix-vector product per sample. In every precision, the passes
+     * of each thread are compiled into a plan fusing the activations into the products.
+     */
+    public NeuralNetworkBuilder setBatched(boolean batched) {
+        this.batched = batched;
+        return this;
+    }
+
+    /**
+     * Runs the innermost loops with explicit SIMD lanes of the JDK Vector API. The JVM has to be started
+     * with --add-modules jdk.incubator.vector, otherwise the scalar kernels are used.
+     */
+    public NeuralNetworkBuilder setVectorKernels(boolean vectorKernels) {
+        this.vectorKernels = vectorKernels;
+        return this;
+    }
+
+    /**
+     * Replaces the default optimizer, momentum with RMSProp configured by the learning rate
+     * and the alphas given to the constructor.
+     */
+    public NeuralNetworkBuilder setOptimizer(Optimizer optimizer) {
+        this.optimizer = optimizer;
+        return this;
+    }
+
+    /**
+     * Varies the learning rate of the optimizer by the schedule, by default it is constant.
+     */
+    public NeuralNetworkBuilder setLearningRateSchedule(LearningRateSchedule schedule) {
+        this.schedule = schedule;
+        return this;
+    }
+
+    /**
+     * Sets how the minibatches are chosen, by default all the samples are shuffled at every step.
+     */
+    public NeuralNetworkBuilder setSampling(Sampling sampling) {
+        this.sampling = sampling;
+        return this;
+    }
+
+    /**
+     * Enables the asynchronous (Hogwild) mode, in which every thread trains on its own shard of the training
+     * samples and updates the shared weights without waiting for the other threads. Checkpoints and the validation
+     * are not supported in this mode, and the listener receives the metrics of the whole training as a single step.
+     */
+    public NeuralNetworkBuilder setAsynchronous(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+        return this;
+    }
+
+    /**
+     * Bounds the staleness of the asynchronous mode: no thread gets more than maxStaleness updates ahead
+     * of the slowest one. Unbounded by default.
+     */
+    public NeuralNetworkBuilder setMaxStaleness(int maxStaleness) {
+        if (maxStaleness < 0) {
+            throw new IllegalArgumentException("Staleness must not be negative!");
+        }
+        this.maxStaleness = maxStaleness;
+        return this;
+    }
+
+    /**
+     * Trains the network as one process of the group: the processes split the training vectors and the minibatch
+     * between them and sum their gradients at every step. All the processes have to be built with the same
+     * configuration and seed; the first one writes the checkpoints.
+     */
+    public NeuralNetworkBuilder setProcessGroup(ProcessGroup processGroup) {
+        this.processGroup = processGroup;
+        return this;
+    }
+
+    /**
+     * Assembles the minibatch of the next step in a background thread while the current step is computed.
+     */
+    public NeuralNetworkBuilder setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    /**
+     * Augments the training vectors of every minibatch by random transformations, requires the prefetch.
+     */
+    public NeuralNetworkBuilder setAugmentation(Augmentation augmentation) {
+        this.augmentation = augmentation;
+        return this;
+    }
+
+    /**
+     * Sets the floating point precision of training, the float precisions require the batched mode.
+     */
+    public NeuralNetworkBuilder setPrecision(Precision precision) {
+        this.precision = precision;
+        return this;
+    }
+
+    /**
+     * Enables checkpoints, written to path in the background every interval steps and after the last step.
+     */
+    public NeuralNetworkBuilder setCheckpoint(Path path, int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive!");
+        }
+        this.checkpointPath = path;
+        this.checkpointInterval = interval;
+        return this;
+    }
+
+    /**
+     * Reports the metrics of every step to the listener, by default the metrics are not collected at all.
+     */
+    public NeuralNetworkBuilder setListener(TrainingListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Holds out the given fraction of the training vectors, chosen by the seed, and evaluates the network on them
+     * every interval steps. The test vectors are never used.
+     */
+    public NeuralNetworkBuilder setValidation(double fraction, int interval) {
+        if (fraction <= 0 || fraction >= 1) {
+            throw new IllegalArgumentException("Validation fraction must be between 0 and 1!");
+        }
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Validation interval must be positive!");
+        }
+        this.validationFraction = fraction;
+        this.validationInterval = interval;
+        return this;
+    }
+
+    /**
+     * Stops the training once the validation loss has not decreased by more than minDelta in patience
+     * consecutive validations, and restores the weights of the best validation. Requires the validation.
+     */
+    public NeuralNetworkBuilder setEarlyStopping(int patience, double minDelta) {
+        if (patience <= 0) {
+            throw new IllegalArgumentException("Patience must be positive!");
+        }
+        this.patience = patience;
+        this.minDelta = minDelta;
+        return this;
+    }
+
     public NeuralNetwork build(ActivationFunction activationFunction) {
+        if (precision != Precision.DOUBLE && !batched) {
+            throw new IllegalStateException("Float precision requires the batched mode!");
+        }
+        if (asynchronous && (checkpointPath != null || validationFraction > 0)) {
+            throw new IllegalStateException("Asynchronous mode does not support checkpoints or validation!");
+        }
+        if (!asynchronous && maxStaleness >= 0) {
+            throw new IllegalStateException("Staleness requires the asynchronous mode!");
+        }
+        if (asynchronous && (processGroup != null || prefetch)) {
+            throw new IllegalStateException("Asynchronous mode does not support a process group or the prefetch!");
+        }
+        if (augmentation != null && !prefetch) {
+            throw new IllegalStateException("Augmentation requires the prefetch!");
+        }
+        if (augmentation != null && augmentation.getDimension() != data.getDimension()) {
+            throw new IllegalStateException("Augmentation does not match the dimension of the data!");
+        }
+        if (patience > 0 && validationFraction == 0) {
+            throw new IllegalStateException("Early stopping requires the validation!");
+        }
         layers.add(new LayerTemplate(data.getLabelCount(), activationFunction));
-        return new NeuralNetwork(data, layers, learningRate, seed, steps, batchSkip,
-                momentumAlpha, rmsAlpha, threads);
+        Optimizer networkOptimizer = optimizer != null ? optimizer
+                : new MomentumRmsProp(learningRate, momentumAlpha, rmsAlpha);
+        return new NeuralNetwork(data, layers, networkOptimizer, schedule, seed, steps, batchSkip,
+                threads, batched, precision, vectorKernels, checkpointPath, checkpointInterval,
+                listener, createValidation(), sampling, asynchronous, maxStaleness,
+                processGroup, prefetch, augmentation);
+    }
+
+    private Validation createValidation() {
+        if (validationFraction == 0) {
+            return null;
+        }
+        int size = data.getTrain().getSize();
+        int[] samples = new int[size];
+        for (int k = 0; k < size; k++) {
+            samples[k] = k;
+        }
+        Random random = new Random(seed);
+        for (int k = size - 1; k > 0; k--) {  // Fisher-Yates shuffle
+            int other = random.nextInt(k + 1);
+            int sample = samples[k];
+            samples[k] = samples[other];
+            samples[other] = sample;
+        }
+        int validationSize = Math.max(1, (int) Math.round(size * validationFraction));
+        return new Validation(Arrays.copyOf(samples, validationSize), validationInterval, patience, minDelta);
     }
 
 }
@@ -0,0 +1,88 @@
+package pv021.optimizer;
+
+import pv021.kernel.Kernels;
+import pv021.kernel.ScalarKernels;
+
+/**
+ * Adam with bias correction and optional decoupled weight decay (AdamW):
+ * m = beta1 * m + (1 - beta1) * g, v = beta2 * v + (1 - beta2) * g^2,
+ * w -= learningRate * (m / (1 - beta1^t) / (sqrt(v / (1 - beta2^t)) + epsilon) + weightDecay * w).
+ * <p>
+ * The decay applies to all the parameters, the biases included.
+ */
+public class Adam implements Optimizer {
+    private final double learningRate;
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+    private final double weightDecay;
+    private double[][] firstMoment;
+    private double[][] secondMoment;
+    private int step;
+    private double learningRateFactor = 1;
+    private Kernels kernels = new ScalarKernels();
+
+    public Adam(double learningRate) {
+        this(learningRate, 0.9, 0.999, 1e-8, 0);
+    }
+
+    public Adam(double learningRate, double beta1, double beta2, double epsilon, double weightDecay) {
+        this.learningRate = learningRate;
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+        this.weightDecay = weightDecay;
+    }
+
+    @Override
+    public void setKernels(Kernels kernels) {
+        this.kernels = kernels;
+    }
+
+    @Override
+    public void initialize(int[] parameters) {
+        firstMoment = new double[parameters.length][];
+        secondMoment = new double[parameters.length][];
+        for (int l = 0; l < parameters.length; l++) {
+            firstMoment[l] = new double[parameters[l]];
+            secondMoment[l] = new double[parameters[l]];
+        }
+    }
+
+    @Override
+    public void nextStep(int step) {
+        this.step = step;
+    }
+
+    @Override
+    public void setLearningRateFactor(double factor) {
+        this.learningRateFactor = factor;
+    }
+
+    @Override
+    public void update(int buffer, double[] weights, int offset, double[] gradients, int length) {
+        update(step, learningRateFactor, buffer, weights, offset, gradients, length);
+    }
+
+    @Override
+    public void update(int step, double factor, int buffer, double[] weights, int offset, double[] gradients,
+                       int length) {
+        double[] m = firstMoment[buffer];
+        double[] v = secondMoment[buffer];
+        // bias corrections of the first and the second moment
+        double rate = learningRate * factor;
+        double stepSize = rate / (1 - Math.pow(beta1, step));
+        double correction = Math.sqrt(1 - Math.pow(beta2, step));
+        double decay = rate * weightDecay;
+        kernels.adamUpdate(weights, m, v, offset, gradients, length, beta1, beta2, stepSize, correction, epsilon,
+                decay);
+    }
+
+    @Override
+    public double[][] getState() {
+        double[][] state = new double[firstMoment.length + secondMoment.length][];
+        System.arraycopy(firstMoment, 0, state, 0, firstMoment.length);
+        System.arraycopy(secondMoment, 0, state, firstMoment.length, secondMoment.length);
+        return state;
+    }
+}
@@ -0,0 +1,24 @@
+package pv021.optimizer;
+
+/**
+ * Decreases the factor from 1 to minFactor along a half cosine over the given number of steps, then keeps
+ * minFactor.
+ */
+public class CosineAnnealing extends LearningRateSchedule {
+    private final int steps;
+    private final double minFactor;
+
+    public CosineAnnealing(int steps, double minFactor) {
+        if (steps <= 0) {
+            throw new IllegalArgumentException("Annealing steps must be positive!");
+        }
+        this.steps = steps;
+        this.minFactor = minFactor;
+    }
+
+    @Override
+    public double getFactor(int step) {
+        double progress = Math.min(1.0, (step - 1) / (double) steps);
+        return minFactor + (1 - minFactor) * (1 + Math.cos(Math.PI * progress)) / 2;
+    }
+}
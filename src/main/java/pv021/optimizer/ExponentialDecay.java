@@ -0,0 +1,17 @@
+package pv021.optimizer;
+
+/**
+ * Multiplies the learning rate by gamma every step.
+ */
+public class ExponentialDecay extends LearningRateSchedule {
+    private final double gamma;
+
+    public ExponentialDecay(double gamma) {
+        this.gamma = gamma;
+    }
+
+    @Override
+    public double getFactor(int step) {
+        return Math.pow(gamma, step - 1);
+    }
+}
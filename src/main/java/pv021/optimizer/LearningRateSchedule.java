@@ -0,0 +1,15 @@
+package pv021.optimizer;
+
+/**
+ * A schedule of the learning rate, given as the factor of the learning rate of the optimizer at every step.
+ * <p>
+ * The factor is set once per step by {@link Optimizer#setLearningRateFactor}, so a schedule adds no work per weight.
+ * It depends only on the number of the step, so a training resumed from a checkpoint follows the same schedule.
+ */
+public abstract class LearningRateSchedule {
+
+    /**
+     * @param step the number of the step, starting from 1
+     */
+    public abstract double getFactor(int step);
+}
@@ -0,0 +1,34 @@
+package pv021.optimizer;
+
+/**
+ * Increases the factor linearly from 1 / warmupSteps to 1 over the first warmupSteps steps, then follows
+ * the given schedule, started anew after the warmup.
+ */
+public class LinearWarmup extends LearningRateSchedule {
+    private final int warmupSteps;
+    private final LearningRateSchedule schedule;
+
+    public LinearWarmup(int warmupSteps) {
+        this(warmupSteps, null);
+    }
+
+    /**
+     * @param schedule the schedule after the warmup, null for a constant learning rate
+     */
+    public LinearWarmup(int warmupSteps, LearningRateSchedule schedule) {
+        if (warmupSteps <= 0) {
+            throw new IllegalArgumentException("Warmup steps must be positive!");
+        }
+        this.warmupSteps = warmupSteps;
+        this.schedule = schedule;
+    }
+
+    @Override
+    public double getFactor(int step) {
+        if (step <= warmupSteps) {
+            double factor = step / (double) warmupSteps;
+            return schedule != null ? factor * schedule.getFactor(1) : factor;
+        }
+        return schedule != null ? schedule.getFactor(step - warmupSteps) : 1;
+    }
+}
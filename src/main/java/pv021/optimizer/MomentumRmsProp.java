@@ -0,0 +1,73 @@
+package pv021.optimizer;
+
+import pv021.kernel.Kernels;
+import pv021.kernel.ScalarKernels;
+
+/**
+ * RMSProp whose steps are smoothed by momentum, the original update rule of the network:
+ * r = rmsAlpha * r + (1 - rmsAlpha) * g^2,
+ * m = momentumAlpha * m - (1 - momentumAlpha) * learningRate / sqrt(r + delta) * g, w += m.
+ */
+public class MomentumRmsProp implements Optimizer {
+    private final double learningRate;
+    private final double momentumAlpha;
+    private final double rmsAlpha;
+    private final double delta;
+    private double learningRateFactor = 1;
+    private Kernels kernels = new ScalarKernels();
+    private double[][] momentum;
+    private double[][] rmsprop;
+
+    public MomentumRmsProp(double learningRate, double momentumAlpha, double rmsAlpha) {
+        this(learningRate, momentumAlpha, rmsAlpha, 1e-8);
+    }
+
+    public MomentumRmsProp(double learningRate, double momentumAlpha, double rmsAlpha, double delta) {
+        this.learningRate = learningRate;
+        this.momentumAlpha = momentumAlpha;
+        this.rmsAlpha = rmsAlpha;
+        this.delta = delta;
+    }
+
+    @Override
+    public void setKernels(Kernels kernels) {
+        this.kernels = kernels;
+    }
+
+    @Override
+    public void initialize(int[] parameters) {
+        momentum = new double[parameters.length][];
+        rmsprop = new double[parameters.length][];
+        for (int l = 0; l < parameters.length; l++) {
+            momentum[l] = new double[parameters[l]];
+            rmsprop[l] = new double[parameters[l]];
+        }
+    }
+
+    @Override
+    public void setLearningRateFactor(double factor) {
+        this.learningRateFactor = factor;
+    }
+
+    @Override
+    public void update(int buffer, double[] weights, int offset, double[] gradients, int length) {
+        update(0, learningRateFactor, buffer, weights, offset, gradients, length);  // independent of the step
+    }
+
+    @Override
+    public void update(int step, double factor, int buffer, double[] weights, int offset, double[] gradients,
+                       int length) {
+        double[] m = momentum[buffer];
+        double[] r = rmsprop[buffer];
+        double rate = learningRate * factor;
+        kernels.momentumRmsPropUpdate(weights, m, r, offset, gradients, length, rate, momentumAlpha, rmsAlpha, delta);
+    }
+
+    @Override
+    public double[][] getState() {
+        double[][] state = new double[momentum.length + rmsprop.length][];
+        System.arraycopy(momentum, 0, state, 0, momentum.length);
+        System.arraycopy(rmsprop, 0, state, momentum.length, rmsprop.length);
+        return state;
+    }
+}
@@ -0,0 +1,56 @@
+package pv021.optimizer;
+
+/**
+ * Gradient descent with Nesterov momentum, in the formulation that keeps only the current weights:
+ * v' = momentum * v - learningRate * g, w += (1 + momentum) * v' - momentum * v.
+ */
+public class NesterovMomentum implements Optimizer {
+    private final double learningRate;
+    private final double momentum;
+    private double learningRateFactor = 1;
+    private double[][] velocity;
+
+    public NesterovMomentum(double learningRate, double momentum) {
+        this.learningRate = learningRate;
+        this.momentum = momentum;
+    }
+
+    @Override
+    public void initialize(int[] parameters) {
+        velocity = new double[parameters.length][];
+        for (int l = 0; l < parameters.length; l++) {
+            velocity[l] = new double[parameters[l]];
+        }
+    }
+
+    @Override
+    public void setLearningRateFactor(double factor) {
+        this.learningRateFactor = factor;
+    }
+
+    @Override
+    public void update(int buffer, double[] weights, int offset, double[] gradients, int length) {
+        update(0, learningRateFactor, buffer, weights, offset, gradients, length);  // independent of the step
+    }
+
+    @Override
+    public void update(int step, double factor, int buffer, double[] weights, int offset, double[] gradients,
+                       int length) {
+        double[] v = velocity[buffer];
+        double rate = learningRate * factor;
+        for (int i = 0; i < length; i++) {
+            int index = offset + i;
+            double previous = v[index];
+            double current = momentum * previous - rate * gradients[i];
+
+            weights[index] += (1 + momentum) * current - momentum * previous;
+            v[index] = current;
+            gradients[i] = 0;
+        }
+    }
+
+    @Override
+    public double[][] getState() {
+        return velocity;
+    }
+}
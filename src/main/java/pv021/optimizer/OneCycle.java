@@ -0,0 +1,52 @@
+package pv021.optimizer;
+
+/**
+ * The one-cycle policy: the factor rises from maxFactor / initialDivisor to maxFactor over the first
+ * warmupFraction of the steps, then falls to maxFactor / initialDivisor / finalDivisor by the last step,
+ * both along half cosines.
+ */
+public class OneCycle extends LearningRateSchedule {
+    private final int steps;
+    private final double maxFactor;
+    private final double warmupFraction;
+    private final double initialDivisor;
+    private final double finalDivisor;
+
+    public OneCycle(int steps, double maxFactor) {
+        this(steps, maxFactor, 0.3, 25, 1e4);
+    }
+
+    public OneCycle(int steps, double maxFactor, double warmupFraction, double initialDivisor,
+                    double finalDivisor) {
+        if (steps <= 1) {
+            throw new IllegalArgumentException("One cycle needs more than one step!");
+        }
+        if (warmupFraction <= 0 || warmupFraction >= 1) {
+            throw new IllegalArgumentException("Warmup fraction must be between 0 and 1!");
+        }
+        this.steps = steps;
+        this.maxFactor = maxFactor;
+        this.warmupFraction = warmupFraction;
+        this.initialDivisor = initialDivisor;
+        this.finalDivisor = finalDivisor;
+    }
+
+    @Override
+    public double getFactor(int step) {
+        double initial = maxFactor / initialDivisor;
+        double last = initial / finalDivisor;
+        double warmupSteps = warmupFraction * (steps - 1);
+        double position = Math.min(step - 1, steps - 1);
+        if (position < warmupSteps) {
+            return anneal(initial, maxFactor, position / warmupSteps);
+        }
+        return anneal(maxFactor, last, (position - warmupSteps) / (steps - 1 - warmupSteps));
+    }
+
+    /**
+     * @return the value between from and to at the given progress along a half cosine
+     */
+    private static double anneal(double from, double to, double progress) {
+        return to + (from - to) * (1 + Math.cos(Math.PI * progress)) / 2;
+    }
+}
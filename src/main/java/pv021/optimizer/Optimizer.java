@@ -0,0 +1,60 @@
+package pv021.optimizer;
+
+import pv021.kernel.Kernels;
+
+/**
+ * An update rule for the weights of the network, owning its per-parameter state.
+ * <p>
+ * The network has one flat parameter buffer per non-output layer (see {@link pv021.network.Layer}). The state
+ * is laid out like these buffers, so every update is a single pass over matching ranges of the parameters,
+ * the gradients and the state.
+ */
+public interface Optimizer {
+
+    /**
+     * Sets the kernels running the update loops, called by the network before {@link #initialize}.
+     * The optimizers without a kernel of their own keep their plain loops.
+     */
+    default void setKernels(Kernels kernels) {
+    }
+
+    /**
+     * Allocates the state, parameters[l] being the length of the l-th parameter buffer.
+     */
+    void initialize(int[] parameters);
+
+    /**
+     * Called once per training step, before the updates of the step.
+     *
+     * @param step the number of the step, starting from 1
+     */
+    default void nextStep(int step) {
+    }
+
+    /**
+     * Scales the learning rate given to the constructor for the updates of the following steps,
+     * see {@link LearningRateSchedule}.
+     */
+    void setLearningRateFactor(double factor);
+
+    /**
+     * Applies the step to the parameters at [offset, offset + length) of the buffer-th parameter buffer,
+     * gradients[i] being the gradient summed over the minibatch of the parameter at offset + i.
+     * The gradients are cleared.
+     * <p>
+     * Called concurrently for disjoint ranges.
+     */
+    void update(int buffer, double[] weights, int offset, double[] gradients, int length);
+
+    /**
+     * Applies the step like {@link #update(int, double[], int, double[], int)}, but at the given step and learning
+     * rate factor instead of the ones set by {@link #nextStep} and {@link #setLearningRateFactor}. The workers of
+     * the asynchronous training update concurrently, each at a step of its own.
+     */
+    void update(int step, double factor, int buffer, double[] weights, int offset, double[] gradients, int length);
+
+    /**
+     * The arrays of the per-parameter state in a fixed order, written into and restored from checkpoints.
+     */
+    double[][] getState();
+}
@@ -0,0 +1,62 @@
+package pv021.optimizer;
+
+import pv021.kernel.Kernels;
+import pv021.kernel.ScalarKernels;
+
+/**
+ * RMSProp, r = rmsAlpha * r + (1 - rmsAlpha) * g^2, w -= learningRate / sqrt(r + delta) * g.
+ */
+public class RmsProp implements Optimizer {
+    private final double learningRate;
+    private final double rmsAlpha;
+    private final double delta;
+    private double learningRateFactor = 1;
+    private Kernels kernels = new ScalarKernels();
+    private double[][] rmsprop;
+
+    public RmsProp(double learningRate, double rmsAlpha) {
+        this(learningRate, rmsAlpha, 1e-8);
+    }
+
+    public RmsProp(double learningRate, double rmsAlpha, double delta) {
+        this.learningRate = learningRate;
+        this.rmsAlpha = rmsAlpha;
+        this.delta = delta;
+    }
+
+    @Override
+    public void setKernels(Kernels kernels) {
+        this.kernels = kernels;
+    }
+
+    @Override
+    public void initialize(int[] parameters) {
+        rmsprop = new double[parameters.length][];
+        for (int l = 0; l < parameters.length; l++) {
+            rmsprop[l] = new double[parameters[l]];
+        }
+    }
+
+    @Override
+    public void setLearningRateFactor(double factor) {
+        this.learningRateFactor = factor;
+    }
+
+    @Override
+    public void update(int buffer, double[] weights, int offset, double[] gradients, int length) {
+        update(0, learningRateFactor, buffer, weights, offset, gradients, length);  // independent of the step
+    }
+
+    @Override
+    public void update(int step, double factor, int buffer, double[] weights, int offset, double[] gradients,
+                       int length) {
+        double[] r = rmsprop[buffer];
+        double rate = learningRate * factor;
+        kernels.rmsPropUpdate(weights, r, offset, gradients, length, rate, rmsAlpha, delta);
+    }
+
+    @Override
+    public double[][] getState() {
+        return rmsprop;
+    }
+}
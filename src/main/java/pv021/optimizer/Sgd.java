@@ -0,0 +1,42 @@
+package pv021.optimizer;
+
+/**
+ * Plain gradient descent, w -= learningRate * g.
+ */
+public class Sgd implements Optimizer {
+    private final double learningRate;
+    private double learningRateFactor = 1;
+
+    public Sgd(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    @Override
+    public void initialize(int[] parameters) {
+    }
+
+    @Override
+    public void setLearningRateFactor(double factor) {
+        this.learningRateFactor = factor;
+    }
+
+    @Override
+    public void update(int buffer, double[] weights, int offset, double[] gradients, int length) {
+        update(0, learningRateFactor, buffer, weights, offset, gradients, length);  // independent of the step
+    }
+
+    @Override
+    public void update(int step, double factor, int buffer, double[] weights, int offset, double[] gradients,
+                       int length) {
+        double rate = learningRate * factor;
+        for (int i = 0; i < length; i++) {
+            weights[offset + i] -= rate * gradients[i];
+            gradients[i] = 0;
+        }
+    }
+
+    @Override
+    public double[][] getState() {
+        return new double[0][];
+    }
+}
@@ -0,0 +1,22 @@
+package pv021.optimizer;
+
+/**
+ * Multiplies the learning rate by gamma every interval steps.
+ */
+public class StepDecay extends LearningRateSchedule {
+    private final int interval;
+    private final double gamma;
+
+    public StepDecay(int interval, double gamma) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Decay interval must be positive!");
+        }
+        this.interval = interval;
+        this.gamma = gamma;
+    }
+
+    @Override
+    public double getFactor(int step) {
+        return Math.pow(gamma, (step - 1) / interval);
+    }
+}
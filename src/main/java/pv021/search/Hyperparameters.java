@@ -0,0 +1,48 @@
+package pv021.search;
+
+/**
+ * One configuration of the network of {@link pv021.main.Main}: the parameters of the default optimizer,
+ * the minibatch size and the size of the hidden layer.
+ */
+public final class Hyperparameters {
+    private final double learningRate;
+    private final int batchSize;
+    private final double momentumAlpha;
+    private final double rmsAlpha;
+    private final int hiddenSize;
+
+    public Hyperparameters(double learningRate, int batchSize, double momentumAlpha, double rmsAlpha,
+                           int hiddenSize) {
+        this.learningRate = learningRate;
+        this.batchSize = batchSize;
+        this.momentumAlpha = momentumAlpha;
+        this.rmsAlpha = rmsAlpha;
+        this.hiddenSize = hiddenSize;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public double getMomentumAlpha() {
+        return momentumAlpha;
+    }
+
+    public double getRmsAlpha() {
+        return rmsAlpha;
+    }
+
+    public int getHiddenSize() {
+        return hiddenSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("learning rate %.5f, batch %d, momentum %.3f, RMS %.3f, hidden %d", learningRate,
+                batchSize, momentumAlpha, rmsAlpha, hiddenSize);
+    }
+}
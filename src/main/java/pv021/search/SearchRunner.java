@@ -0,0 +1,67 @@
+package pv021.search;
+
+import pv021.data.Data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Runs a successive halving search over the default {@link SearchSpace}, prints the best trial and writes
+ * the leaderboard into leaderboard.csv.
+ * <p>
+ * Run with {@code java -cp target/pv021-1.0-SNAPSHOT.jar pv021.search.SearchRunner [data path] [trials]
+ * [min steps] [max steps] [threads]}, the defaults being data/fashion_mnist, 27 trials, 40 to 1080 steps with
+ * a reduction factor of 3 and a thread per available processor.
+ */
+public final class SearchRunner {
+    public static final String DATA = "data/fashion_mnist";
+    public static final Path LEADERBOARD = Path.of("leaderboard.csv");
+    private static final int LABELS = 10;
+    private static final int ETA = 3;
+    private static final int SEED = 1;
+
+    private SearchRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : DATA;
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 27;
+        int minSteps = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+        int maxSteps = args.length > 3 ? Integer.parseInt(args[3]) : 1080;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("Loading data...");
+        Data data = loadData(path);
+        System.out.println("Searching...");
+        report(search(data, trials, minSteps, maxSteps, threads));
+    }
+
+    /**
+     * Loads the training split, the search validates on held out training vectors and never reads the test split.
+     */
+    public static Data loadData(String path) throws IOException {
+        return new Data(path, LABELS, true, false);
+    }
+
+    /**
+     * Runs the search with one thread per trial.
+     *
+     * @return the leaderboard, see {@link SuccessiveHalving#run()}
+     */
+    public static List<Trial> search(Data data, int trials, int minSteps, int maxSteps, int threads)
+            throws Exception {
+        return new SuccessiveHalving(data, new SearchSpace(), trials, minSteps, maxSteps, ETA, threads, 1, SEED)
+                .run();
+    }
+
+    /**
+     * Writes the leaderboard into leaderboard.csv and prints its best trial.
+     */
+    public static void report(List<Trial> leaderboard) throws IOException {
+        SuccessiveHalving.writeLeaderboard(leaderboard, LEADERBOARD);
+        Trial best = leaderboard.get(0);
+        System.out.printf("Best trial %d (%s): validation accuracy %.4f after %d steps%n", best.getId(),
+                best.getHyperparameters(), best.getValidationAccuracy(), best.getSteps());
+    }
+}
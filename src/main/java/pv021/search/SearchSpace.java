@@ -0,0 +1,72 @@
+package pv021.search;
+
+import java.util.Random;
+
+/**
+ * The ranges the hyperparameters are sampled from: the learning rate log-uniformly, the momentum and RMS
+ * decays uniformly, and the batch and hidden layer sizes from lists of choices. The defaults surround
+ * the configuration of {@link pv021.main.Main}.
+ */
+public class SearchSpace {
+    private double minLearningRate = 0.0005;
+    private double maxLearningRate = 0.005;
+    private int[] batchSizes = {256, 512, 1024, 2048};
+    private double minMomentumAlpha = 0.0;
+    private double maxMomentumAlpha = 0.9;
+    private double minRmsAlpha = 0.8;
+    private double maxRmsAlpha = 0.99;
+    private int[] hiddenSizes = {64, 128, 256};
+
+    public SearchSpace setLearningRate(double min, double max) {
+        if (min <= 0 || max < min) {
+            throw new IllegalArgumentException("Learning rate range must be positive!");
+        }
+        this.minLearningRate = min;
+        this.maxLearningRate = max;
+        return this;
+    }
+
+    public SearchSpace setBatchSizes(int... batchSizes) {
+        if (batchSizes.length == 0) {
+            throw new IllegalArgumentException("Batch sizes must not be empty!");
+        }
+        this.batchSizes = batchSizes.clone();
+        return this;
+    }
+
+    public SearchSpace setMomentumAlpha(double min, double max) {
+        if (min < 0 || max < min || max >= 1) {
+            throw new IllegalArgumentException("Momentum range must be within [0, 1)!");
+        }
+        this.minMomentumAlpha = min;
+        this.maxMomentumAlpha = max;
+        return this;
+    }
+
+    public SearchSpace setRmsAlpha(double min, double max) {
+        if (min < 0 || max < min || max >= 1) {
+            throw new IllegalArgumentException("RMS range must be within [0, 1)!");
+        }
+        this.minRmsAlpha = min;
+        this.maxRmsAlpha = max;
+        return this;
+    }
+
+    public SearchSpace setHiddenSizes(int... hiddenSizes) {
+        if (hiddenSizes.length == 0) {
+            throw new IllegalArgumentException("Hidden sizes must not be empty!");
+        }
+        this.hiddenSizes = hiddenSizes.clone();
+        return this;
+    }
+
+    public Hyperparameters sample(Random random) {
+        double learningRate = Math.exp(Math.log(minLearningRate)
+                + random.nextDouble() * (Math.log(maxLearningRate) - Math.log(minLearningRate)));
+        int batchSize = batchSizes[random.nextInt(batchSizes.length)];
+        double momentumAlpha = minMomentumAlpha + random.nextDouble() * (maxMomentumAlpha - minMomentumAlpha);
+        double rmsAlpha = minRmsAlpha + random.nextDouble() * (maxRmsAlpha - minRmsAlpha);
+        int hiddenSize = hiddenSizes[random.nextInt(hiddenSizes.length)];
+        return new Hyperparameters(learningRate, batchSize, momentumAlpha, rmsAlpha, hiddenSize);
+    }
+}
@@ -0,0 +1,174 @@
+package pv021.search;
+
+import pv021.data.Data;
+import pv021.function.activation.ReLuFunction;
+import pv021.function.activation.SoftMaxFunction;
+import pv021.network.NeuralNetwork;
+import pv021.network.builder.NeuralNetworkBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A hyperparameter search by successive halving: all the trials are trained for minSteps steps, the best
+ * 1 / eta of them by the validation accuracy are trained further to eta times as many steps, and so on until
+ * the survivors reach maxSteps. Most of the budget thus goes to the promising configurations.
+ * <p>
+ * The trials of a rung are trained concurrently, threads / threadsPerTrial at a time, on the shared read-only
+ * {@link Data}. The trials with the largest networks and minibatches are started first, so that the rung is not
+ * held up by a slow trial started last. Every trial uses the seed of the search for the initialization and
+ * the held out validation vectors, so that all of them are compared on the same vectors and the results
+ * do not depend on the number of threads.
+ */
+public class SuccessiveHalving {
+    private static final double VALIDATION_FRACTION = 0.1;
+
+    private final Data data;
+    private final SearchSpace space;
+    private final int trials;
+    private final int minSteps;
+    private final int maxSteps;
+    private final int eta;
+    private final int threads;
+    private final int threadsPerTrial;
+    private final long seed;
+
+    public SuccessiveHalving(Data data, SearchSpace space, int trials, int minSteps, int maxSteps, int eta,
+                             int threads, int threadsPerTrial, long seed) {
+        if (minSteps <= 0 || maxSteps < minSteps) {
+            throw new IllegalArgumentException("Steps must be positive and minSteps at most maxSteps!");
+        }
+        if (eta < 2) {
+            throw new IllegalArgumentException("Reduction factor must be at least 2!");
+        }
+        if (threadsPerTrial <= 0 || threads < threadsPerTrial) {
+            throw new IllegalArgumentException("Thread budget must fit at least one trial!");
+        }
+        this.data = data;
+        this.space = space;
+        this.trials = trials;
+        this.minSteps = minSteps;
+        this.maxSteps = maxSteps;
+        this.eta = eta;
+        this.threads = threads;
+        this.threadsPerTrial = threadsPerTrial;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the search.
+     *
+     * @return all the trials, the best first: ordered by the number of trained steps and then by the validation
+     * accuracy
+     */
+    public List<Trial> run() throws Exception {
+        Random random = new Random(seed);
+        List<Trial> all = new ArrayList<>();
+        for (int id = 0; id < trials; id++) {
+            all.add(new Trial(id, space.sample(random)));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads / threadsPerTrial);
+        try {
+            List<Trial> alive = new ArrayList<>(all);
+            for (int rung = 0, steps = minSteps; ; rung++, steps = (int) Math.min((long) steps * eta, maxSteps)) {
+                alive.sort(Comparator.comparingLong(SuccessiveHalving::getCost).reversed());
+                List<Future<?>> results = new ArrayList<>();
+                for (Trial trial : alive) {
+                    int rungSteps = steps;
+                    results.add(pool.submit(() -> {
+                        train(trial, rungSteps);
+                        return null;
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+
+                alive.sort(Comparator.comparingDouble(Trial::getValidationAccuracy).reversed());
+                System.out.printf("Rung %d: %d trials trained for %d steps, best validation accuracy %.4f%n", rung,
+                        alive.size(), steps, alive.get(0).getValidationAccuracy());
+                if (steps == maxSteps || alive.size() == 1) {
+                    break;
+                }
+                int kept = Math.max(1, alive.size() / eta);
+                for (Trial trial : alive.subList(kept, alive.size())) {
+                    trial.prune();
+                }
+                alive = new ArrayList<>(alive.subList(0, kept));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        all.sort(Comparator.comparingInt(Trial::getSteps).thenComparingDouble(Trial::getValidationAccuracy)
+                .reversed());
+        return all;
+    }
+
+    /**
+     * @return an estimate of the work of one step of the trial
+     */
+    private static long getCost(Trial trial) {
+        return (long) trial.getHyperparameters().getBatchSize() * trial.getHyperparameters().getHiddenSize();
+    }
+
+    /**
+     * Trains the trial up to the given number of steps, continuing from its checkpoint, and validates it
+     * after the last step.
+     */
+    private void train(Trial trial, int steps) throws Exception {
+        Hyperparameters hyperparameters = trial.getHyperparameters();
+        try (NeuralNetwork neuralNetwork = new NeuralNetworkBuilder(data,
+                hyperparameters.getLearningRate(),
+                steps,
+                hyperparameters.getBatchSize(),
+                hyperparameters.getMomentumAlpha(),
+                hyperparameters.getRmsAlpha(),
+                seed,
+                threadsPerTrial)
+                .setBatched(true)
+                .setValidation(VALIDATION_FRACTION, steps)
+                .addLayer(hyperparameters.getHiddenSize(), new ReLuFunction())
+                .build(new SoftMaxFunction())) {
+            if (trial.getCheckpoint() != null) {
+                neuralNetwork.restore(trial.getCheckpoint());
+            }
+
+            long start = System.nanoTime();
+            neuralNetwork.train();
+            trial.completeRung(neuralNetwork.createCheckpoint(), steps, neuralNetwork.getValidationAccuracy(),
+                    System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes the trials as CSV with a header, in the order of the list.
+     */
+    public static void writeLeaderboard(List<Trial> trials, Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("rank,trial,learning_rate,batch_size,momentum_alpha,rms_alpha,hidden_size,steps,"
+                    + "validation_accuracy,training_ms");
+            writer.newLine();
+            for (int rank = 0; rank < trials.size(); rank++) {
+                Trial trial = trials.get(rank);
+                Hyperparameters hyperparameters = trial.getHyperparameters();
+                writer.write((rank + 1) + "," + trial.getId() + "," + hyperparameters.getLearningRate() + ","
+                        + hyperparameters.getBatchSize() + "," + hyperparameters.getMomentumAlpha() + ","
+                        + hyperparameters.getRmsAlpha() + "," + hyperparameters.getHiddenSize() + ","
+                        + trial.getSteps() + "," + trial.getValidationAccuracy() + ","
+                        + trial.getTrainingNanos() / 1e6);
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package pv021.search;
+
+import pv021.network.Checkpoint;
+
+/**
+ * One configuration of a search with its progress: the network is kept as a checkpoint between the rungs,
+ * so that a promoted trial continues its training instead of starting over.
+ */
+public final class Trial {
+    private final int id;
+    private final Hyperparameters hyperparameters;
+    private Checkpoint checkpoint;  // null before the first rung and after the trial is pruned
+    private int steps;
+    private double validationAccuracy = Double.NaN;
+    private long trainingNanos;
+
+    Trial(int id, Hyperparameters hyperparameters) {
+        this.id = id;
+        this.hyperparameters = hyperparameters;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Hyperparameters getHyperparameters() {
+        return hyperparameters;
+    }
+
+    Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @return the number of steps the trial was trained for before it was pruned or the search ended
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the validation accuracy after the last trained step
+     */
+    public double getValidationAccuracy() {
+        return validationAccuracy;
+    }
+
+    /**
+     * @return the time spent training the trial over all its rungs
+     */
+    public long getTrainingNanos() {
+        return trainingNanos;
+    }
+
+    void completeRung(Checkpoint checkpoint, int steps, double validationAccuracy, long nanos) {
+        this.checkpoint = checkpoint;
+        this.steps = steps;
+        this.validationAccuracy = validationAccuracy;
+        this.trainingNanos += nanos;
+    }
+
+    void prune() {
+        checkpoint = null;
+    }
+}
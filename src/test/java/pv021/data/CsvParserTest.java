@@ -0,0 +1,65 @@
+package pv021.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvParserTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void parsesValues() throws IOException {
+        Path path = write("1,-2,3\r\n\n40,5,-6\n");
+
+        CsvParser.Result result = new CsvParser(path, false).parse();
+        assertArrayEquals(new float[]{1, -2, 3, 40, 5, -6}, result.getValues());
+
+        float[] target = new float[6];
+        try (CsvChunkReader reader = new CsvChunkReader(path, 3)) {
+            assertEquals(2, reader.read(target, 2));
+        }
+        assertArrayEquals(new float[]{1, -2, 3, 40, 5, -6}, target);
+    }
+
+    @Test
+    void rejectsEmptyField() throws IOException {
+        assertRejected("1,,2\n");
+    }
+
+    @Test
+    void rejectsLoneMinus() throws IOException {
+        assertRejected("1,-,2\n");
+    }
+
+    @Test
+    void rejectsTrailingComma() throws IOException {
+        assertRejected("1,2,\n");
+    }
+
+    private void assertRejected(String content) throws IOException {
+        Path path = write(content);
+        IllegalStateException parserError = assertThrows(IllegalStateException.class,
+                () -> new CsvParser(path, false).parse());
+        assertEquals("Unexpected empty field in " + path + "!", parserError.getMessage());
+
+        try (CsvChunkReader reader = new CsvChunkReader(path, 3)) {
+            IllegalStateException readerError = assertThrows(IllegalStateException.class,
+                    () -> reader.read(new float[3], 1));
+            assertEquals("Unexpected empty field in " + path + "!", readerError.getMessage());
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        Path path = directory.resolve("vectors.csv");
+        Files.writeString(path, content);
+        return path;
+    }
+}
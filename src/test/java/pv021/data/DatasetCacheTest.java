@@ -0,0 +1,66 @@
+package pv021.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class DatasetCacheTest {
+    private static final int ROWS = 50;
+    private static final int DIMENSION = 31;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void cachedVectorsEqualUncachedVectors() throws IOException {
+        Random random = new Random(42);
+        for (String split : new String[]{"train", "test"}) {
+            StringBuilder vectors = new StringBuilder();
+            StringBuilder labels = new StringBuilder();
+            for (int k = 0; k < ROWS; k++) {
+                for (int i = 0; i < DIMENSION; i++) {
+                    vectors.append(i == 0 ? "" : ",").append(random.nextInt(256));
+                }
+                vectors.append('\n');
+                labels.append(random.nextInt(10)).append('\n');
+            }
+            Files.writeString(directory.resolve("data_" + split + "_vectors.csv"), vectors);
+            Files.writeString(directory.resolve("data_" + split + "_labels.csv"), labels);
+        }
+
+        String path = directory.resolve("data").toString();
+        Data uncached = new Data(path, 10, false);
+        Data created = new Data(path, 10, true);
+        Data loaded = new Data(path, 10, true);
+        assertInstanceOf(MappedDataset.class, created.getTrain());
+        assertInstanceOf(MappedDataset.class, loaded.getTest());
+
+        for (Data cached : new Data[]{created, loaded}) {
+            assertEqualVectors(uncached.getTrain(), cached.getTrain());
+            assertEqualVectors(uncached.getTest(), cached.getTest());
+        }
+    }
+
+    private static void assertEqualVectors(Dataset expected, Dataset actual) {
+        assertArrayEquals(expected.getLabels(), actual.getLabels());
+        float[] expectedFloats = new float[DIMENSION];
+        float[] actualFloats = new float[DIMENSION];
+        double[] expectedDoubles = new double[DIMENSION];
+        double[] actualDoubles = new double[DIMENSION];
+        for (int k = 0; k < expected.getSize(); k++) {
+            expected.copyVector(k, expectedFloats, 0);
+            actual.copyVector(k, actualFloats, 0);
+            assertArrayEquals(expectedFloats, actualFloats);
+            expected.copyVector(k, expectedDoubles, 0);
+            actual.copyVector(k, actualDoubles, 0);
+            assertArrayEquals(expectedDoubles, actualDoubles);
+        }
+    }
+}
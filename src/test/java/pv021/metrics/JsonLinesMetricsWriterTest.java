@@ -0,0 +1,32 @@
+package pv021.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonLinesMetricsWriterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesNonFiniteValuesAsNull() throws IOException {
+        Path path = directory.resolve("metrics.jsonl");
+        try (JsonLinesMetricsWriter writer = new JsonLinesMetricsWriter(path)) {
+            writer.onStep(new StepMetrics(1, 32, 2_000_000, 1_500_000, 500_000, 0.5, 0.5, 0.75));
+            writer.onStep(new StepMetrics(2, 32, 0, 0, 0, Double.NaN, Double.POSITIVE_INFINITY, 0.25));
+        }
+
+        assertEquals(List.of(
+                "{\"step\":1,\"samples\":32,\"step_ms\":2.0,\"pass_ms\":1.5,\"update_ms\":0.5,"
+                        + "\"samples_per_second\":16000.0,\"loss\":0.5,\"running_loss\":0.5,\"accuracy\":0.75}",
+                "{\"step\":2,\"samples\":32,\"step_ms\":0.0,\"pass_ms\":0.0,\"update_ms\":0.0,"
+                        + "\"samples_per_second\":null,\"loss\":null,\"running_loss\":null,\"accuracy\":0.25}"),
+                Files.readAllLines(path));
+    }
+}